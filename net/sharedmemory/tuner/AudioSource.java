@@ -0,0 +1,51 @@
+/*
+ * AudioSource.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Somewhere the Recorder can get raw PCM samples from.  The samples are
+ * 16 bit little-endian mono, as recorded by capture://audio?encoding=pcm,
+ * and are written to a sink given to the source when it is opened.
+ *
+ * @author David Keen
+ */
+public interface AudioSource {
+
+    /**
+     * Gets the source ready to deliver samples.
+     *
+     * @param sink where the samples are to be written.
+     * @throws IOException if the source can't be opened.
+     */
+    void open(OutputStream sink) throws IOException;
+
+    /**
+     * Writes about length more bytes of samples to the sink.  A real time
+     * source blocks for as long as it takes to record them.
+     *
+     * @param length the number of bytes wanted.
+     * @return false if the source has run out of samples.
+     * @throws IOException if the samples can't be read.
+     * @throws InterruptedException if the thread was interrupted.
+     */
+    boolean deliver(int length) throws IOException, InterruptedException;
+
+    /**
+     * Returns true if the source produces samples at its own pace and
+     * so must not be held up if the analysis falls behind.
+     *
+     * @return true for a real time source.
+     */
+    boolean isRealTime();
+
+    /**
+     * Releases any resources held by the source.
+     */
+    void close();
+}
@@ -0,0 +1,142 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+import java.io.*;
+
+public class AudioSourceTest extends TestCase {
+
+    private static final int POWER = 12;
+
+    // E2, A2, E4, A4, G#5 and A5.
+    private static final double[] FREQUENCIES = {82.41, 110.0, 329.63, 440.0, 830.61, 880.0};
+
+    public AudioSourceTest() {
+    }
+
+    public AudioSourceTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Runs synthetic tones through the Recorder, Buffer and Workspace
+     * faster than real time, without a microphone or a MIDlet.  The notes
+     * run from the bottom string of a guitar to the top of the range.
+     */
+    public void testPipeline() throws InterruptedException {
+        System.out.println("pipeline");
+        Workspace workspace = new Workspace(POWER);
+        for (int i = 0; i < FREQUENCIES.length; i++) {
+            pipeline(workspace, FREQUENCIES[i]);
+        }
+    }
+
+    private void pipeline(Workspace workspace, double frequency) throws InterruptedException {
+        int frameLength = 1 << POWER;
+        int frames = 5;
+
+        Buffer buffer = new Buffer(frameLength);
+        AudioSource source = new SyntheticSource(frequency, TunerMIDlet.RATE, false, frames * frameLength / 2);
+        Recorder recorder = new Recorder(buffer, source, frameLength, null);
+        Thread thread = new Thread(recorder);
+        thread.start();
+
+        // Within a bin of the tone.
+        double resolution = 2.0 * TunerMIDlet.RATE / frameLength;
+        for (int i = 0; i < frames; i++) {
+            double result = workspace.analyse(buffer.remove());
+            buffer.release();
+            assertTrue(frequency + " Hz frame " + i + " was " + result, Math.abs(result - frequency) < resolution);
+        }
+        thread.join();
+        assertEquals(0, buffer.available());
+        assertEquals(0, recorder.getDroppedSamples());
+    }
+
+    /**
+     * A real time source can't wait for the consumer, so frames that find
+     * the Buffer full are dropped and their samples counted.
+     */
+    public void testDropped() throws InterruptedException {
+        System.out.println("dropped");
+        int frameLength = 256;
+        int frames = 6;
+        Buffer buffer = new Buffer(frameLength, 2);
+        AudioSource source = new SyntheticSource(440.0, TunerMIDlet.RATE, true, frames * frameLength / 2);
+        Recorder recorder = new Recorder(buffer, source, frameLength, null);
+
+        // Nothing is read, so only the first two frames fit.
+        Thread thread = new Thread(recorder);
+        thread.start();
+        thread.join();
+        assertEquals(2, buffer.available());
+        assertEquals((frames - 2) * frameLength / 2, recorder.getDroppedSamples());
+    }
+
+    /**
+     * Test of WavSource, which must skip the header and stop at the end
+     * of the data chunk.
+     */
+    public void testWavSource() throws Exception {
+        System.out.println("WavSource");
+        ByteArrayOutputStream wav = new ByteArrayOutputStream();
+        writeTag(wav, "RIFF");
+        writeInt(wav, 4 + 8 + 16 + 8 + 6 + 8 + 4);
+        writeTag(wav, "WAVE");
+        writeTag(wav, "fmt ");
+        writeInt(wav, 16);
+        writeShort(wav, 1);
+        writeShort(wav, 1);
+        writeInt(wav, 11025);
+        writeInt(wav, 22050);
+        writeShort(wav, 2);
+        writeShort(wav, 16);
+        writeTag(wav, "data");
+        writeInt(wav, 6);
+        wav.write(new byte[] {1, 2, 3, 4, 5, 6});
+        writeTag(wav, "LIST");
+        writeInt(wav, 4);
+        writeTag(wav, "junk");
+
+        WavSource instance = new WavSource(new ByteArrayInputStream(wav.toByteArray()), false);
+        assertEquals(11025, instance.getRate());
+
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        instance.open(sink);
+        assertTrue(instance.deliver(4));
+        assertTrue(!instance.deliver(4));
+        assertTrue(!instance.deliver(4));
+        byte[] samples = sink.toByteArray();
+        assertEquals(6, samples.length);
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(i + 1, samples[i]);
+        }
+    }
+
+    private void writeTag(OutputStream out, String tag) throws IOException {
+        out.write(tag.getBytes());
+    }
+
+    private void writeInt(OutputStream out, int i) throws IOException {
+        writeShort(out, i);
+        writeShort(out, i >> 16);
+    }
+
+    private void writeShort(OutputStream out, int i) throws IOException {
+        out.write(i);
+        out.write(i >> 8);
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new AudioSourceTest("testPipeline", new TestMethod(){ public void run(TestCase tc) throws Throwable {((AudioSourceTest) tc).testPipeline();}}));
+        suite.addTest(new AudioSourceTest("testDropped", new TestMethod(){ public void run(TestCase tc) throws Throwable {((AudioSourceTest) tc).testDropped();}}));
+        suite.addTest(new AudioSourceTest("testWavSource", new TestMethod(){ public void run(TestCase tc) throws Throwable {((AudioSourceTest) tc).testWavSource();}}));
+        return suite;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Autocorrelation.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * Finds the autocorrelation of a frame of samples with the FFT, for the
+ * time domain pitch detectors.  Everything is allocated once so a frame
+ * allocates nothing.  An Autocorrelation is not thread-safe.
+ *
+ * @author David Keen
+ */
+public class Autocorrelation {
+
+    private int n;              // The FFT length, twice the frame length.
+    private int length;         // Samples in a frame.
+
+    private FFT fft;
+    private double[] xr;        // Array of real parts (even samples in).
+    private double[] xi;        // Array of complex parts (odd samples in).
+    private double[] power;     // The power spectrum, bins 0 to n/2.
+    private double[] r;         // The autocorrelation.
+
+    /**
+     * Creates a new instance of Autocorrelation.
+     *
+     * @param power the FFT length is 2 raised to this power.  Frames are
+     * half as long, so the zero padding stops the correlation wrapping.
+     */
+    public Autocorrelation(int power) {
+        n = 1 << power;
+        length = n / 2;
+
+        // The signal and its power spectrum are real so half length
+        // transforms will do.
+        fft = new FFT(power);
+        xr = new double[n / 2];
+        xi = new double[n / 2];
+        this.power = new double[n / 2 + 1];
+        r = new double[n / 2];
+    }
+
+    /**
+     * Finds r(tau), the sum of x[j] * x[j + tau], for every lag.
+     *
+     * @param x the samples, 2^(power - 1) of them.
+     * @return the autocorrelation for lags 0 to 2^(power - 1) - 1.  The
+     * array is reused by the next call.
+     */
+    public double[] compute(double[] x) {
+        int half = n / 2;
+
+        // The zero padded frame, even samples in xr and odd ones in xi.
+        // doRealFFT drops the Nyquist bin so work it out here.
+        double nyquist = 0.0;
+        for (int i = 0, j = 0; i < half; i++, j += 2) {
+            xr[i] = (j < length) ? x[j] : 0.0;
+            xi[i] = (j + 1 < length) ? x[j + 1] : 0.0;
+            nyquist += xr[i] - xi[i];
+        }
+        nyquist /= n;
+        fft.doRealFFT(xr, xi);
+
+        for (int k = 0; k < half; k++) {
+            power[k] = xr[k] * xr[k] + xi[k] * xi[k];
+        }
+        power[half] = nyquist * nyquist;
+
+        // The power spectrum is real and symmetric, so transforming it
+        // forwards gives the autocorrelation too.
+        for (int i = 0, j = 0; i < half; i++, j += 2) {
+            xr[i] = power[(j <= half) ? j : n - j];
+            xi[i] = power[(j + 1 <= half) ? j + 1 : n - j - 1];
+        }
+        fft.doRealFFT(xr, xi);
+
+        // Both transforms scaled by 1/n.
+        double scale = (double)n * n;
+        for (int tau = 0; tau < half; tau++) {
+            r[tau] = xr[tau] * scale;
+        }
+        return r;
+    }
+
+    /**
+     * Refines the position of a minimum or maximum by fitting a parabola
+     * through it and its neighbours.  The fit is only made if neither
+     * neighbour is beyond it, which keeps the result within half a sample.
+     * Elsewhere the parabola may turn anywhere, even at a negative index.
+     *
+     * @param y the function values.
+     * @param i the index of the extreme value.
+     * @return the refined index.
+     */
+    public static double interpolate(double[] y, int i) {
+        if (i < 1 || i >= y.length - 1) {
+            return i;
+        }
+        if ((y[i] - y[i - 1]) * (y[i] - y[i + 1]) <= 0.0) {
+            return i;
+        }
+        double denominator = y[i - 1] - 2.0 * y[i] + y[i + 1];
+        return i + (y[i - 1] - y[i + 1]) / (2.0 * denominator);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * BatchAnalyser.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+import java.io.*;
+import java.util.Vector;
+
+/**
+ * Finds the pitch of every frame of a set of recordings, using the same
+ * detection as the Processor.  The files are shared out between a number
+ * of worker threads, each with its own PitchDetector.  A worker takes the
+ * next file as soon as it has finished the last, so the load stays
+ * balanced however long the files are.
+ *
+ * Subclasses say where the recordings come from by implementing list and
+ * open; FileBatchAnalyser reads a directory with the FileConnection API.
+ *
+ * @author David Keen
+ */
+public abstract class BatchAnalyser {
+    private int threads;
+    private int power;
+
+    private String[] names;     // The files to analyse.
+    private Timeline[] results;
+    private int next;           // The next file to hand out.
+    private long frames;        // Frames analysed by all workers.
+    private long elapsed;       // How long (ms) the batch took.
+    private Exception error;    // The first thing to go wrong, if anything.
+
+    /**
+     * Creates a new instance of BatchAnalyser
+     *
+     * @param threads the number of worker threads.
+     * @param power there are 2 raised to this power bytes in each frame.
+     */
+    public BatchAnalyser(int threads, int power) {
+        this.threads = threads;
+        this.power = power;
+    }
+
+    /**
+     * Analyses all the .wav and .pcm files listed; anything else is left
+     * out.  Raw .pcm files are taken to be recorded at TunerMIDlet.RATE.
+     *
+     * @return a timeline for each file, in the order they were listed.
+     * @throws Exception if any file couldn't be analysed.
+     */
+    public Timeline[] run() throws Exception {
+        names = recordings(list());
+        results = new Timeline[names.length];
+        next = 0;
+        frames = 0;
+        error = null;
+
+        long start = System.currentTimeMillis();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Worker());
+            workers[i].start();
+        }
+        for (int i = 0; i < threads; i++) {
+            workers[i].join();
+        }
+        elapsed = System.currentTimeMillis() - start;
+
+        if (error != null) {
+            throw error;
+        }
+        return results;
+    }
+
+    /**
+     * Reports how fast the last batch went.
+     *
+     * @return the files, frames, files/s and frames/s.
+     */
+    public String getReport() {
+        double seconds = Math.max(elapsed, 1) / 1000.0;
+        return names.length + " files, " + frames + " frames in " + seconds + " s with "
+                + threads + " threads: " + (names.length / seconds) + " files/s, "
+                + (frames / seconds) + " frames/s";
+    }
+
+    /**
+     * Lists the files to analyse.
+     *
+     * @return the names of the files.
+     * @throws IOException if the files can't be listed.
+     */
+    protected abstract String[] list() throws IOException;
+
+    /**
+     * Opens a recording.
+     *
+     * @param name the name of the file, as listed.
+     * @return the contents of the file.
+     * @throws IOException if the file can't be opened.
+     */
+    protected abstract InputStream open(String name) throws IOException;
+
+    /**
+     * Picks out the .wav and .pcm files.
+     */
+    private static String[] recordings(String[] files) {
+        Vector v = new Vector();
+        for (int i = 0; i < files.length; i++) {
+            String lower = files[i].toLowerCase();
+            if (lower.endsWith(".wav") || lower.endsWith(".pcm")) {
+                v.addElement(files[i]);
+            }
+        }
+        String[] s = new String[v.size()];
+        v.copyInto(s);
+        return s;
+    }
+
+    /**
+     * Hands out the next file to analyse.
+     *
+     * @return the index of the file, or -1 if there are none left.
+     */
+    private synchronized int nextFile() {
+        if (error != null || next == names.length) {
+            return -1;
+        }
+        return next++;
+    }
+
+    private synchronized void finished(int file, Timeline timeline) {
+        results[file] = timeline;
+        frames += timeline.getFrames();
+    }
+
+    private synchronized void failed(Exception e) {
+        if (error == null) {
+            error = e;
+        }
+    }
+
+    /**
+     * Analyses files until there are none left.
+     */
+    private class Worker implements Runnable {
+        private int frameLength = 1 << power;
+        private Buffer buffer = new Buffer(frameLength, 2);
+        private PitchDetector detector;
+        private int rate;
+
+        public void run() {
+            try {
+                for (int file; (file = nextFile()) >= 0;) {
+                    finished(file, analyse(names[file]));
+                }
+            } catch (Exception e) {
+                failed(e);
+            }
+        }
+
+        /**
+         * Finds the pitch of each frame of a file.  The same thread writes
+         * frames into the Buffer and reads them out again.
+         */
+        private Timeline analyse(String name) throws Exception {
+            InputStream in = open(name);
+            AudioSource source;
+            int fileRate;
+            if (name.toLowerCase().endsWith(".wav")) {
+                WavSource wav = new WavSource(in, false);
+                source = wav;
+                fileRate = wav.getRate();
+            } else {
+                source = new PcmSource(in, TunerMIDlet.RATE, false);
+                fileRate = TunerMIDlet.RATE;
+            }
+
+            // Only make a new detector if the sample rate changes.
+            if (detector == null || fileRate != rate) {
+                detector = Processor.createDetector(PitchDetector.HPS, power, fileRate, false);
+                rate = fileRate;
+            }
+
+            // Two bytes per sample.
+            Timeline timeline = new Timeline(name, frameLength / 2.0 / rate);
+            try {
+                source.open(new FrameOutputStream(buffer, frameLength, true));
+                boolean more;
+                do {
+                    more = source.deliver(frameLength);
+                    while (buffer.available() > 0) {
+                        timeline.add(detector.analyse(buffer.remove()));
+                        buffer.release();
+                    }
+                } while (more);
+            } finally {
+                source.close();
+            }
+            return timeline;
+        }
+    }
+}
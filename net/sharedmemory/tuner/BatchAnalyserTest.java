@@ -0,0 +1,152 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+import java.io.*;
+import java.util.Hashtable;
+
+public class BatchAnalyserTest extends TestCase {
+
+    private static final int POWER = 12;
+    private static final int FRAMES = 6;
+
+    public BatchAnalyserTest() {
+    }
+
+    public BatchAnalyserTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Test of run and getReport methods, of class
+     * net.sharedmemory.tuner.BatchAnalyser.  Raw PCM and WAV recordings at
+     * two rates are shared between two threads, and anything else listed
+     * is left out.
+     */
+    public void testrun() throws Exception {
+        System.out.println("run");
+        final String[] names = {"a3.pcm", "readme.txt", "e2.wav", "a5.WAV"};
+        final Hashtable files = new Hashtable();
+        files.put("a3.pcm", tone(220.0, TunerMIDlet.RATE));
+        files.put("readme.txt", "Not a recording".getBytes());
+        files.put("e2.wav", wav(tone(82.41, 2 * TunerMIDlet.RATE), 2 * TunerMIDlet.RATE));
+        files.put("a5.WAV", wav(tone(880.0, TunerMIDlet.RATE), TunerMIDlet.RATE));
+
+        BatchAnalyser instance = new BatchAnalyser(2, POWER) {
+            protected String[] list() {
+                return names;
+            }
+
+            protected InputStream open(String name) throws IOException {
+                if (!files.containsKey(name)) {
+                    throw new IOException("No " + name);
+                }
+                return new ByteArrayInputStream((byte[])files.get(name));
+            }
+        };
+        Timeline[] result = instance.run();
+
+        assertEquals(3, result.length);
+        check(result[0], "a3.pcm", 220.0, TunerMIDlet.RATE);
+        check(result[1], "e2.wav", 82.41, 2 * TunerMIDlet.RATE);
+        check(result[2], "a5.WAV", 880.0, TunerMIDlet.RATE);
+        String report = instance.getReport();
+        assertTrue(report, report.startsWith("3 files, " + 3 * FRAMES + " frames in "));
+        assertTrue(report, report.indexOf(" with 2 threads: ") > 0);
+    }
+
+    /**
+     * A file that can't be read fails the whole batch.
+     */
+    public void testError() throws Exception {
+        System.out.println("run error");
+        BatchAnalyser instance = new BatchAnalyser(2, POWER) {
+            protected String[] list() {
+                return new String[] {"missing.pcm"};
+            }
+
+            protected InputStream open(String name) throws IOException {
+                throw new IOException("No " + name);
+            }
+        };
+        try {
+            instance.run();
+            fail("No exception");
+        } catch (IOException e) {
+            assertEquals("No missing.pcm", e.getMessage());
+        }
+    }
+
+    /**
+     * Every frame of a recording of a steady tone must find the tone.
+     */
+    private void check(Timeline timeline, String name, double frequency, int rate) {
+        assertEquals(name, timeline.getName());
+        assertEquals(FRAMES, timeline.getFrames());
+        double frameTime = (1 << POWER) / 2.0 / rate;
+        for (int i = 0; i < FRAMES; i++) {
+            double result = timeline.getFrequency(i);
+            assertTrue(name + " frame " + i + " was " + result, Math.abs(result - frequency) < frequency * 0.003);
+            assertTrue(name + " frame " + i + " at " + timeline.getTime(i), Math.abs(timeline.getTime(i) - i * frameTime) < 1e-9);
+        }
+    }
+
+    /**
+     * Creates FRAMES frames of a tone, as 16 bit samples.
+     */
+    private byte[] tone(double frequency, int rate) throws Exception {
+        SyntheticSource source = new SyntheticSource(frequency, rate, false);
+        ByteArrayOutputStream samples = new ByteArrayOutputStream();
+        source.open(samples);
+        source.deliver(FRAMES << POWER);
+        return samples.toByteArray();
+    }
+
+    /**
+     * Wraps 16 bit mono samples in a WAV header.
+     */
+    private byte[] wav(byte[] samples, int rate) throws IOException {
+        ByteArrayOutputStream wav = new ByteArrayOutputStream();
+        writeTag(wav, "RIFF");
+        writeInt(wav, 4 + 8 + 16 + 8 + samples.length);
+        writeTag(wav, "WAVE");
+        writeTag(wav, "fmt ");
+        writeInt(wav, 16);
+        writeShort(wav, 1);
+        writeShort(wav, 1);
+        writeInt(wav, rate);
+        writeInt(wav, 2 * rate);
+        writeShort(wav, 2);
+        writeShort(wav, 16);
+        writeTag(wav, "data");
+        writeInt(wav, samples.length);
+        wav.write(samples);
+        return wav.toByteArray();
+    }
+
+    private void writeTag(OutputStream out, String tag) throws IOException {
+        out.write(tag.getBytes());
+    }
+
+    private void writeInt(OutputStream out, int i) throws IOException {
+        writeShort(out, i);
+        writeShort(out, i >> 16);
+    }
+
+    private void writeShort(OutputStream out, int i) throws IOException {
+        out.write(i);
+        out.write(i >> 8);
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new BatchAnalyserTest("testrun", new TestMethod(){ public void run(TestCase tc) throws Throwable {((BatchAnalyserTest) tc).testrun();}}));
+        suite.addTest(new BatchAnalyserTest("testError", new TestMethod(){ public void run(TestCase tc) throws Throwable {((BatchAnalyserTest) tc).testError();}}));
+        return suite;
+    }
+}
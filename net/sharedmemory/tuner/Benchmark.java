@@ -0,0 +1,748 @@
+/*
+ * Benchmark.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+import java.util.Vector;
+
+/**
+ * Timing benchmarks for the signal processing code.
+ * Each result is a line of text so it can be shown on a Form or
+ * printed to the console.
+ *
+ * @author David Keen
+ */
+public class Benchmark {
+
+    // Minimum time (ms) each measurement is run for.
+    private static final long MIN_TIME = 1000;
+
+    // How many runs to measure allocation over.
+    private static final int ALLOCATION_RUNS = 256;
+
+    // The ratio of a quarter tone, 2^(1/24).
+    private static final double QUARTER_TONE = 1.0293022366434921;
+
+    private Vector results;
+
+    /**
+     * Something to be timed.
+     */
+    private interface Task {
+        void run();
+    }
+
+    /**
+     * Runs the benchmarks and prints the results.
+     *
+     * @param args optionally the suite to run: fft, kernels, pipeline,
+     * engine, backpressure or accuracy.
+     */
+    public static void main(String[] args) {
+        Vector results = new Benchmark().run(args.length > 0 ? args[0] : null);
+        for (int i = 0; i < results.size(); i++) {
+            System.out.println(results.elementAt(i));
+        }
+    }
+
+    /**
+     * Runs all the benchmarks.
+     *
+     * @return the results, one String per line.
+     */
+    public Vector run() {
+        return run(null);
+    }
+
+    /**
+     * Runs one suite of benchmarks.
+     *
+     * @param suite fft, kernels, pipeline, engine, backpressure or
+     * accuracy, or null for all of them.
+     * @return the results, one String per line.
+     */
+    public Vector run(String suite) {
+        results = new Vector();
+        if (suite == null || suite.equals("fft")) {
+            for (int bits = 10; bits <= 13; bits++) {
+                fftTwiddle(bits);
+            }
+            for (int bits = 10; bits <= 13; bits++) {
+                fftReal(bits);
+            }
+            for (int bits = 10; bits <= 13; bits++) {
+                fftFixed(bits);
+            }
+            for (int frames = 2; frames <= 8; frames *= 2) {
+                fftBatch(10, frames);
+                fftBatch(12, frames);
+            }
+        }
+        if (suite == null || suite.equals("kernels")) {
+            kernels(12);
+        }
+        if (suite == null || suite.equals("pipeline")) {
+            pipeline(12);
+        }
+        if (suite == null || suite.equals("engine")) {
+            for (int channels = 1; channels <= 16; channels *= 4) {
+                engine(12, channels, 1);
+                engine(12, channels, 2);
+            }
+        }
+        if (suite == null || suite.equals("backpressure")) {
+            String[] names = {"block", "drop oldest", "latest wins", "coalesce"};
+            for (int policy = Buffer.BLOCK; policy <= Buffer.COALESCE; policy++) {
+                backpressure(names[policy], policy);
+            }
+        }
+        if (suite == null || suite.equals("accuracy")) {
+            for (int power = 10; power <= 13; power++) {
+                accuracy(power);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Times each of the methods on the analysis path on its own, so
+     * changes to any of them can be judged with numbers.
+     *
+     * @param power the power of two of the sample length.
+     */
+    private void kernels(final int power) {
+        final int n = 1 << power;
+        final FFT fft = new FFT(power);
+        final double[] xr = new double[n];
+        final double[] xi = new double[n];
+        final double[] rr = new double[n / 2];
+        final double[] ri = new double[n / 2];
+        final double[] spectrum = new double[n / 2];
+        final double[] d = new double[n / 2];
+        final byte[] samples = signal(n);
+        final Workspace workspace = new Workspace(power);
+
+        measure("FFT(" + power + ")", new Task() {
+            public void run() {
+                new FFT(power);
+            }
+        });
+        for (int bits = 10; bits <= 15; bits++) {
+            final FFT f = new FFT(bits);
+            final double[] r = new double[1 << bits];
+            final double[] i = new double[1 << bits];
+            measure("doFFT " + (1 << bits), new Task() {
+                public void run() {
+                    f.doFFT(r, i, false);
+                }
+            });
+        }
+        measure("populateArrays " + n, new Task() {
+            public void run() {
+                fft.populateArrays(xr, xi, samples);
+            }
+        });
+        measure("populateRealArrays " + n, new Task() {
+            public void run() {
+                fft.populateRealArrays(rr, ri, samples);
+            }
+        });
+
+        // Make the rest work on a real spectrum.
+        fft.populateArrays(xr, xi, samples);
+        fft.doFFT(xr, xi, false);
+        fft.createSpectrum(xr, xi, spectrum);
+        final double[] times2 = fft.downSample(spectrum, 2);
+        final double[] times3 = fft.downSample(spectrum, 3);
+
+        measure("createSpectrum " + n, new Task() {
+            public void run() {
+                fft.createSpectrum(xr, xi);
+            }
+        });
+        measure("createSpectrum in place " + n, new Task() {
+            public void run() {
+                fft.createSpectrum(xr, xi, d);
+            }
+        });
+        measure("downSample x2 " + n, new Task() {
+            public void run() {
+                fft.downSample(spectrum, 2);
+            }
+        });
+        measure("downSample x2 in place " + n, new Task() {
+            public void run() {
+                fft.downSample(spectrum, 2, d);
+            }
+        });
+        measure("HPSMax " + n, new Task() {
+            public void run() {
+                fft.HPSMax(spectrum, times2, times3, 25, 507);
+            }
+        });
+        measure("createPowerSpectrum " + n, new Task() {
+            public void run() {
+                fft.createPowerSpectrum(xr, xi, d);
+            }
+        });
+        fft.createPowerSpectrum(xr, xi, d);
+        final HarmonicProductSpectrum hps3 = new HarmonicProductSpectrum(3);
+        final HarmonicProductSpectrum hps5 = new HarmonicProductSpectrum(5);
+        final HarmonicProductSpectrum hpsLog = new HarmonicProductSpectrum(3, true);
+        measure("HarmonicProductSpectrum x3 " + n, new Task() {
+            public void run() {
+                hps3.findMax(d, 25, 507);
+            }
+        });
+        measure("HarmonicProductSpectrum x5 " + n, new Task() {
+            public void run() {
+                hps5.findMax(d, 25, 507);
+            }
+        });
+        measure("HarmonicProductSpectrum log x3 " + n, new Task() {
+            public void run() {
+                hpsLog.findMax(d, 25, 507);
+            }
+        });
+        measure("Note.findNote", new Task() {
+            public void run() {
+                Note.findNote(441.5);
+            }
+        });
+        measure("Note.tuningDirection", new Task() {
+            public void run() {
+                Note.tuningDirection("A4", 441.5);
+            }
+        });
+        measure("Note.midiNote", new Task() {
+            public void run() {
+                int note = Note.midiNote(441.5);
+                Note.tuningDirection(note, 441.5);
+                Note.cents(note, 441.5);
+            }
+        });
+        measure("Workspace.analyse " + n, new Task() {
+            public void run() {
+                workspace.analyse(samples);
+            }
+        });
+        // Halving RATE would lose the top harmonics, so the decimated
+        // figure is for the same frame recorded at twice the rate.
+        final Workspace decimated = new Workspace(power, 2 * TunerMIDlet.RATE, 2);
+        measure("Workspace.analyse decimated at " + 2 * TunerMIDlet.RATE + " Hz " + n, new Task() {
+            public void run() {
+                decimated.analyse(samples);
+            }
+        });
+        final Workspace fixed = new Workspace(power, TunerMIDlet.RATE, Processor.decimation(TunerMIDlet.RATE), true);
+        measure("Workspace.analyse fixed point " + n, new Task() {
+            public void run() {
+                fixed.analyse(samples);
+            }
+        });
+
+        // The time domain detectors on the shorter frames they need.
+        final byte[] shortFrame = signal(n / 2);
+        final PitchDetector yin = new YinDetector(power - 1, TunerMIDlet.RATE);
+        measure("YinDetector.analyse " + n / 2, new Task() {
+            public void run() {
+                yin.analyse(shortFrame);
+            }
+        });
+        final PitchDetector mcleod = new McLeodDetector(power - 1, TunerMIDlet.RATE);
+        measure("McLeodDetector.analyse " + n / 2, new Task() {
+            public void run() {
+                mcleod.analyse(shortFrame);
+            }
+        });
+        final PitchDetector goertzel = new GoertzelDetector(power, TunerMIDlet.RATE);
+        measure("GoertzelDetector.analyse " + n, new Task() {
+            public void run() {
+                goertzel.analyse(samples);
+            }
+        });
+        final ConstantQDetector constantQ = new ConstantQDetector(power, TunerMIDlet.RATE, Processor.decimation(TunerMIDlet.RATE));
+        final ConstantQ cq = constantQ.getTransform();
+        final double[] cqPower = new double[cq.getLength()];
+        measure("ConstantQ.transform " + cq.getLength() + " bins, " + cq.getKernelSize() + " kernel values", new Task() {
+            public void run() {
+                cq.transform(xr, xi, cqPower);
+            }
+        });
+        measure("ConstantQDetector.analyse " + n, new Task() {
+            public void run() {
+                constantQ.analyse(samples);
+            }
+        });
+    }
+
+    /**
+     * Compares the table driven FFT with the original routine that calls
+     * Math.sin and Math.cos for every butterfly.
+     *
+     * @param bits the power of two of the transform size.
+     */
+    private void fftTwiddle(final int bits) {
+        final int n = 1 << bits;
+        final FFT fft = new FFT(bits);
+        final double[] xr = new double[n];
+        final double[] xi = new double[n];
+        final byte[] samples = signal(n);
+
+        final int[] bitreverse = new int[n];
+        for (int i = n - 1; i >= 0; --i) {
+            int k = 0;
+            for (int j = 0; j < bits; ++j) {
+                k *= 2;
+                if ((i & (1 << j)) != 0)
+                    k++;
+            }
+            bitreverse[i] = k;
+        }
+
+        double trig = time(new Task() {
+            public void run() {
+                fft.populateArrays(xr, xi, samples);
+                doFFTTrig(bits, bitreverse, xr, xi, false);
+            }
+        });
+        double table = time(new Task() {
+            public void run() {
+                fft.populateArrays(xr, xi, samples);
+                fft.doFFT(xr, xi, false);
+            }
+        });
+        report("doFFT " + n + " trig", trig);
+        report("doFFT " + n + " table", table);
+        results.addElement("  speedup x" + format(trig / table));
+    }
+
+    /**
+     * Compares the real input FFT with a full complex FFT of the same samples.
+     *
+     * @param bits the power of two of the transform size.
+     */
+    private void fftReal(int bits) {
+        int n = 1 << bits;
+        final FFT fft = new FFT(bits);
+        final double[] xr = new double[n];
+        final double[] xi = new double[n];
+        final double[] rr = new double[n / 2];
+        final double[] ri = new double[n / 2];
+        final byte[] samples = signal(n);
+
+        double complex = time(new Task() {
+            public void run() {
+                fft.populateArrays(xr, xi, samples);
+                fft.doFFT(xr, xi, false);
+                fft.createSpectrum(xr, xi);
+            }
+        });
+        double real = time(new Task() {
+            public void run() {
+                fft.populateRealArrays(rr, ri, samples);
+                fft.doRealFFT(rr, ri);
+                fft.createSpectrum(rr, ri, rr.length);
+            }
+        });
+        report("spectrum " + n + " complex", complex);
+        report("spectrum " + n + " real", real);
+        results.addElement("  speedup x" + format(complex / real));
+    }
+
+    /**
+     * Compares real transforms of several frames one at a time with the
+     * same frames in one interleaved batch.
+     *
+     * @param bits the power of two of the transform size.
+     * @param frames the number of frames in the batch.
+     */
+    private void fftBatch(int bits, final int frames) {
+        int n = 1 << bits;
+        final FFT fft = new FFT(bits);
+        final double[] rr = new double[n / 2];
+        final double[] ri = new double[n / 2];
+        final double[] br = new double[n / 2 * frames];
+        final double[] bi = new double[n / 2 * frames];
+        final double[] power = new double[n / 2];
+        final byte[] samples = signal(n);
+
+        double single = time(new Task() {
+            public void run() {
+                for (int f = 0; f < frames; f++) {
+                    fft.populateRealArrays(rr, ri, samples);
+                    fft.doRealFFT(rr, ri);
+                    fft.createPowerSpectrum(rr, ri, power);
+                }
+            }
+        });
+        double batch = time(new Task() {
+            public void run() {
+                for (int f = 0; f < frames; f++) {
+                    fft.populateBatchArrays(br, bi, samples, f, frames);
+                }
+                fft.doRealBatchFFT(br, bi, frames);
+                for (int f = 0; f < frames; f++) {
+                    fft.createPowerSpectrum(br, bi, f, frames, power);
+                }
+            }
+        });
+        report("spectrum " + n + " x" + frames + " one at a time", single);
+        report("spectrum " + n + " x" + frames + " batch", batch);
+        results.addElement("  speedup x" + format(single / batch));
+    }
+
+    /**
+     * Compares the fixed point spectrum with the double one, for speed
+     * and for accuracy as a signal to noise ratio.
+     *
+     * @param bits the power of two of the transform size.
+     */
+    private void fftFixed(int bits) {
+        final int n = 1 << bits;
+        final FFT fft = new FFT(bits);
+        final FixedFFT fixed = new FixedFFT(bits);
+        final byte[] samples = signal(2 * n);
+        final double[] decoded = new double[n];
+        final double[] xr = new double[n / 2];
+        final double[] xi = new double[n / 2];
+        final double[] spectrum = new double[n / 2];
+        final int[] ixr = new int[n / 2];
+        final int[] ixi = new int[n / 2];
+        final double[] fixedSpectrum = new double[n / 2];
+
+        double floating = time(new Task() {
+            public void run() {
+                Pcm.decode(samples, decoded);
+                fft.populateRealArrays(xr, xi, decoded);
+                fft.doRealFFT(xr, xi);
+                fft.createSpectrum(xr, xi, spectrum);
+            }
+        });
+        double integer = time(new Task() {
+            public void run() {
+                fixed.populateRealArrays(ixr, ixi, samples);
+                fixed.createSpectrum(ixr, ixi, fixed.doRealFFT(ixr, ixi), fixedSpectrum);
+            }
+        });
+
+        double signal = 0.0;
+        double noise = 0.0;
+        for (int i = 0; i < n / 2; i++) {
+            signal += spectrum[i] * spectrum[i];
+            noise += (fixedSpectrum[i] - spectrum[i]) * (fixedSpectrum[i] - spectrum[i]);
+        }
+
+        report("spectrum " + n + " real", floating);
+        report("spectrum " + n + " fixed", integer);
+        results.addElement("  speedup x" + format(floating / integer) + ", SNR "
+                + format(10.0 * MathUtils.log(signal / noise) / MathUtils.log(10.0)) + " dB");
+    }
+
+    /**
+     * Runs a synthetic tone through the whole Recorder, Buffer and
+     * Workspace pipeline as fast as it can go.
+     *
+     * @param power the power of two of the frame length.
+     */
+    private void pipeline(int power) {
+        int frameLength = 1 << power;
+        int frames = 200;
+
+        Buffer buffer = new Buffer(frameLength);
+        AudioSource source = new SyntheticSource(440.0, TunerMIDlet.RATE, false, (long)frames * frameLength / 2);
+        Recorder recorder = new Recorder(buffer, source, frameLength, null);
+        Workspace workspace = new Workspace(power);
+
+        long start = System.currentTimeMillis();
+        new Thread(recorder).start();
+        for (int i = 0; i < frames; i++) {
+            workspace.analyse(buffer.remove());
+            buffer.release();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        report("pipeline " + frameLength, 1000000.0 * elapsed / frames);
+        results.addElement("  " + format(1000.0 * frames / Math.max(elapsed, 1)) + " frames/s, "
+                + format((double)frames * frameLength / 2 / TunerMIDlet.RATE / Math.max(elapsed, 1) * 1000.0)
+                + "x real time");
+    }
+
+    /**
+     * Times a TuningEngine analysing many synthetic channels as fast as
+     * they can be generated, to see how many real time streams a thread
+     * can keep up with.
+     *
+     * @param power the power of two of the frame length in bytes.
+     * @param channels the number of channels.
+     * @param threads the number of worker threads.
+     */
+    private void engine(int power, int channels, int threads) {
+        int frameLength = 1 << power;
+        int frames = 400 / channels + 10;
+
+        TuningEngine engine = new TuningEngine(threads);
+        for (int i = 0; i < channels; i++) {
+            AudioSource source = new SyntheticSource(110.0 + 20.0 * i, TunerMIDlet.RATE, false, (long)frames * frameLength / 2);
+            engine.addSource(source, Processor.createDetector(PitchDetector.HPS, power, TunerMIDlet.RATE, false),
+                    frameLength, TunerMIDlet.RATE);
+        }
+        try {
+            engine.start();
+            engine.join();
+            engine.stop();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e.toString());
+        }
+        results.addElement("engine " + frameLength + ": " + engine.getReport());
+    }
+
+    /**
+     * Runs a real time source into an analysis that takes half as long
+     * again as a frame lasts, to see how far behind each Buffer policy
+     * lets it get and how many frames it sheds.  Blocking holds up the
+     * source, as recording a frame at a time does.
+     *
+     * @param name the name of the policy.
+     * @param policy one of the Buffer policies.
+     */
+    private void backpressure(String name, int policy) {
+        int power = 11;
+        int frameLength = 1 << power;
+        long frameMs = 1000L * frameLength / 2 / TunerMIDlet.RATE;
+        long runMs = 3000;
+
+        Buffer buffer = new Buffer(frameLength);
+        buffer.setPolicy(policy, (policy == Buffer.BLOCK) ? 0 : 4 * frameMs);
+        FrameOutputStream sink = new FrameOutputStream(buffer, frameLength, policy == Buffer.BLOCK);
+        Recorder recorder = new Recorder(sink, new SyntheticSource(440.0, TunerMIDlet.RATE, true), frameLength);
+        PitchDetector detector = new Workspace(power);
+        Histogram age = new Histogram();
+
+        Thread thread = new Thread(recorder);
+        long start = System.currentTimeMillis();
+        int frames = 0;
+        thread.start();
+        try {
+            while (System.currentTimeMillis() - start < runMs) {
+                if (policy == Buffer.COALESCE) {
+                    buffer.skip(1);
+                }
+                byte[] samples = buffer.remove();
+                age.record(System.currentTimeMillis() - buffer.getTimestamp());
+                detector.analyse(samples);
+                buffer.release();
+                frames++;
+
+                // Stand in for a slower phone.
+                Thread.sleep(frameMs * 3 / 2);
+            }
+            recorder.stop();
+            thread.interrupt();
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e.toString());
+        }
+        results.addElement("backpressure " + name + ": " + frames + " analysed, " + buffer.getShed() + " shed, "
+                + sink.getDroppedSamples() / (frameLength / 2) + " dropped, age ms " + age);
+    }
+
+    /**
+     * Measures how accurate each detector is for a frame length, over
+     * noisy synthetic tones a quarter tone apart across the note range.
+     * Errors over 50 cents are counted as wrong notes and left out of the
+     * mean and maximum.
+     *
+     * @param power the power of two of the frame length in bytes.
+     */
+    private void accuracy(int power) {
+        int frameLength = 1 << power;
+        results.addElement("accuracy " + frameLength + " ("
+                + (1000 * frameLength / 2 / TunerMIDlet.RATE) + " ms), cents mean/max (wrong):");
+
+        Workspace binCentre = new Workspace(power);
+        binCentre.setInterpolation(false);
+        accuracy("  HPS", binCentre, frameLength);
+        accuracy("  HPS interpolated", new Workspace(power), frameLength);
+        accuracy("  YIN", new YinDetector(power, TunerMIDlet.RATE), frameLength);
+        accuracy("  McLeod", new McLeodDetector(power, TunerMIDlet.RATE), frameLength);
+        accuracy("  Constant Q", new ConstantQDetector(power, TunerMIDlet.RATE, Processor.decimation(TunerMIDlet.RATE)), frameLength);
+    }
+
+    private void accuracy(String name, PitchDetector detector, int frameLength) {
+        double sum = 0.0;
+        double max = 0.0;
+        int tones = 0;
+        int wrong = 0;
+        for (double frequency = 131.0; frequency < Processor.MAX_HZ; frequency *= QUARTER_TONE) {
+            SyntheticSource source = new SyntheticSource(frequency, TunerMIDlet.RATE, false);
+            source.setNoise(0.1);
+            java.io.ByteArrayOutputStream frame = new java.io.ByteArrayOutputStream(frameLength);
+            try {
+                source.open(frame);
+                source.deliver(frameLength);
+            } catch (Exception e) {
+                throw new RuntimeException(e.toString());
+            }
+
+            double error = Math.abs(1200.0 * MathUtils.log(detector.analyse(frame.toByteArray()) / frequency) / MathUtils.LN2);
+            if (error > 50.0 || error != error) {
+                wrong++;
+            } else {
+                sum += error;
+                max = Math.max(max, error);
+                tones++;
+            }
+        }
+        results.addElement(name + ": " + format(sum / Math.max(tones, 1)) + "/" + format(max) + " (" + wrong + ")");
+    }
+
+    /**
+     * The original FFT routine, kept as the baseline for comparison.
+     */
+    private static void doFFTTrig(int bits, int[] bitreverse, double[] xr, double[] xi, boolean invFlag) {
+        int n, n2, i, k, kn2, l, p;
+        double ang, s, c, tr, ti;
+
+        n2 = (n = (1 << bits)) / 2;
+
+        for (l = 0; l < bits; ++l) {
+            for (k = 0; k < n; k += n2) {
+                for (i = 0; i < n2; ++i, ++k) {
+                    p = bitreverse[k / n2];
+                    ang = 2.0 * Math.PI * p / n;
+                    c = Math.cos(ang);
+                    s = Math.sin(ang);
+                    kn2 = k + n2;
+
+                    if (invFlag)
+                        s = -s;
+
+                    tr = xr[kn2] * c + xi[kn2] * s;
+                    ti = xi[kn2] * c - xr[kn2] * s;
+
+                    xr[kn2] = xr[k] - tr;
+                    xi[kn2] = xi[k] - ti;
+                    xr[k] += tr;
+                    xi[k] += ti;
+                }
+            }
+            n2 /= 2;
+        }
+
+        for (k = 0; k < n; k++) {
+            if ((i = bitreverse[k]) <= k)
+                continue;
+
+            tr = xr[k];
+            ti = xi[k];
+            xr[k] = xr[i];
+            xi[k] = xi[i];
+            xr[i] = tr;
+            xi[i] = ti;
+        }
+
+        if (!invFlag) {
+            double f = 1.0 / n;
+
+            for (i = 0; i < n ; i++) {
+                xr[i] *= f;
+                xi[i] *= f;
+            }
+        }
+    }
+
+    /**
+     * Times a task and measures how much it allocates.
+     *
+     * @param name what to call the task in the results.
+     * @param task the task to measure.
+     */
+    private void measure(String name, Task task) {
+        double nanos = time(task);
+        long bytes = allocation(task);
+        results.addElement(name + ": " + format(nanos) + " ns/op, "
+                + (bytes < 0 ? "?" : "" + bytes) + " B/op");
+    }
+
+    /**
+     * Runs a task repeatedly for at least MIN_TIME.
+     *
+     * @param task the task to time.
+     * @return the average time per run in nanoseconds.
+     */
+    private double time(Task task) {
+        // Warm up.
+        task.run();
+
+        long runs = 0;
+        long start = System.currentTimeMillis();
+        long elapsed;
+        do {
+            task.run();
+            runs++;
+            elapsed = System.currentTimeMillis() - start;
+        } while (elapsed < MIN_TIME);
+        return 1000000.0 * elapsed / runs;
+    }
+
+    /**
+     * Measures how much memory a task allocates each time it is run, from
+     * how much the heap grows.  If the garbage collector runs during the
+     * measurement it is tried again with fewer runs.
+     *
+     * @param task the task to measure.
+     * @return the bytes allocated per run, or -1 if it couldn't be measured.
+     */
+    private long allocation(Task task) {
+        Runtime runtime = Runtime.getRuntime();
+        for (int runs = ALLOCATION_RUNS; runs > 0; runs /= 4) {
+            System.gc();
+            long before = runtime.totalMemory() - runtime.freeMemory();
+            for (int i = 0; i < runs; i++) {
+                task.run();
+            }
+            long used = runtime.totalMemory() - runtime.freeMemory() - before;
+            if (used >= 0) {
+                return used / runs;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates a test signal of 440Hz plus harmonics, as 16 bit
+     * little-endian samples.
+     *
+     * @param length the number of bytes.
+     * @return the samples.
+     */
+    private byte[] signal(int length) {
+        byte[] samples = new byte[length];
+        for (int i = 0; i < length / 2; i++) {
+            double t = 2.0 * Math.PI * 440.0 * i / TunerMIDlet.RATE;
+            int sample = (int)(6000.0 * Math.sin(t) + 3000.0 * Math.sin(2 * t) + 2000.0 * Math.sin(3 * t));
+            samples[2 * i] = (byte)sample;
+            samples[2 * i + 1] = (byte)(sample >> 8);
+        }
+        return samples;
+    }
+
+    private void report(String name, double nanos) {
+        results.addElement(name + ": " + format(nanos) + " ns/op");
+    }
+
+    /**
+     * Formats a number to two decimal places.
+     */
+    private String format(double d) {
+        long l = (long)(d * 100.0 + 0.5);
+        String fraction = "" + (l % 100);
+        if (fraction.length() < 2) {
+            fraction = "0" + fraction;
+        }
+        return (l / 100) + "." + fraction;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * BenchmarkMIDlet.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+import java.util.Vector;
+import javax.microedition.midlet.*;
+import javax.microedition.lcdui.*;
+
+/**
+ * Runs the signal processing benchmarks on the device and shows the results.
+ *
+ * @author David Keen
+ */
+public class BenchmarkMIDlet extends MIDlet implements CommandListener, Runnable {
+
+    private Display display;
+    private Form form;
+    private Command exitCommand;
+    private Thread thread;
+
+    public BenchmarkMIDlet() {
+        display = Display.getDisplay(this);
+        form = new Form("Benchmark");
+        exitCommand = new Command("Exit", Command.EXIT, 0);
+        form.addCommand(exitCommand);
+        form.setCommandListener(this);
+    }
+
+    public void startApp() {
+        display.setCurrent(form);
+        if (thread == null) {
+            form.append("Running...\n");
+            thread = new Thread(this);
+            thread.start();
+        }
+    }
+
+    public void pauseApp() {
+    }
+
+    public void destroyApp(boolean unconditional) {
+    }
+
+    public void commandAction(Command command, Displayable displayable) {
+        if (command.getCommandType() == Command.EXIT) {
+            destroyApp(true);
+            notifyDestroyed();
+        }
+    }
+
+    public void run() {
+        Vector results = new Benchmark().run();
+        for (int i = 0; i < results.size(); i++) {
+            form.append(results.elementAt(i) + "\n");
+        }
+    }
+}
@@ -6,59 +6,294 @@
 package net.sharedmemory.tuner;
 
 /**
- * A thread-safe shared buffer class for holding raw sample data.
+ * A shared ring of preallocated frames for passing raw sample data from
+ * a single producer thread to a single consumer thread.
+ * Frames are handed over without copying or locking.  The producer
+ * acquires a free frame, fills it and commits it; the consumer removes
+ * the oldest committed frame, reads it and releases it.  A frame belongs
+ * to exactly one side at a time so it can't be overwritten while it is
+ * being read.
+ *
+ * When the consumer falls behind, a policy decides what gives.  With
+ * BLOCK the producer waits for room.  The other policies keep the
+ * producer going and have the consumer throw frames away as it takes
+ * them, so the pitch shown doesn't fall further and further behind.
+ * The producer can't take back a frame it has handed over, so these
+ * frames are shed by the consumer, which is the thread that is behind.
+ * Each frame is numbered, counting any the producer drops, so the
+ * consumer can tell when frames are missing between two it has read.
+ *
+ * A thread that has to wait yields for a while, as the wait is usually
+ * short, then sleeps, twice as long each time up to MAX_SLEEP_MS.  A
+ * long wait, such as the consumer's between frames, wakes it a few
+ * times a hop rather than hundreds, and no monitor is ever taken.  The
+ * price is that a frame can wait up to MAX_SLEEP_MS to be noticed.
  *
  * @author David Keen
  */
 public class Buffer {
-    private boolean full;
-    private byte[] sample;
+
+    // Default number of frames in the ring.
+    public static final int DEFAULT_SLOTS = 4;
+
+    // What to do when the consumer falls behind.
+    public static final int BLOCK = 0;        // The producer waits.
+    public static final int DROP_OLDEST = 1;  // Keep half the ring at most.
+    public static final int LATEST_WINS = 2;  // Only the newest frame.
+    public static final int COALESCE = 3;     // The consumer takes them all at once.
+
+    // How many times to yield before sleeping while waiting for the
+    // other thread, and the longest (ms) to sleep before looking again.
+    private static final int SPINS = 100;
+    private static final long MAX_SLEEP_MS = 16;
+
+    private byte[][] frames;
+    private long[] stamps;      // When (ms) each frame was committed.
+    private int[] sequences;    // The number of each frame committed.
+    private int produced;       // Frames committed or dropped so far.
+    private int mask;
+
+    // The producer only writes head and the consumer only writes tail.
+    // They only ever increase; the frame index is the count & mask.
+    private volatile int head;  // Frames committed.
+    private volatile int tail;  // Frames released.
+
+    private int policy = BLOCK;
+    private long maxAge;        // Oldest frame (ms) to hand out, or 0.
+    private volatile long shed; // Frames thrown away by the consumer.
 
     /**
-     * Creates a new instance of Buffer
+     * Creates a new instance of Buffer with the default number of frames.
      *
-     * @param size the initial size of the buffer.
+     * @param size the size of each frame.
      */
     public Buffer(int size) {
-        full = false;
-        sample = new byte[size];
+        this(size, DEFAULT_SLOTS);
     }
 
     /**
-     * A thread-safe method to insert data into the buffer.
+     * Creates a new instance of Buffer
      *
-     * @param data an array of raw sample data.
+     * @param size the size of each frame.
+     * @param slots the number of frames in the ring.  This is rounded up
+     * to a power of two.
      */
-    public synchronized void insert(byte[] data) {
-        while (full) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                // If Thread was interrupted, we just want to terminate.
+    public Buffer(int size, int slots) {
+        int n = 1;
+        while (n < slots) {
+            n *= 2;
+        }
+        frames = new byte[n][size];
+        stamps = new long[n];
+        sequences = new int[n];
+        mask = n - 1;
+        head = 0;
+        tail = 0;
+    }
+
+    /**
+     * Sets what to do when the consumer falls behind.  Set it before
+     * the producer starts.
+     *
+     * @param policy BLOCK, DROP_OLDEST, LATEST_WINS or COALESCE.
+     * @param maxAge frames waiting longer than this (ms) are thrown away
+     * unless there are none newer, whatever the policy; 0 for no limit.
+     */
+    public void setPolicy(int policy, long maxAge) {
+        this.policy = policy;
+        this.maxAge = maxAge;
+    }
+
+    public int getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns how many frames the consumer has thrown away unread
+     * because of the policy or their age.
+     *
+     * @return the number of frames shed.
+     */
+    public long getShed() {
+        return shed;
+    }
+
+    /**
+     * Gets the next free frame for the producer to fill, waiting for the
+     * consumer to release one if the ring is full.
+     *
+     * @return the frame to fill, or null if the thread was interrupted.
+     */
+    public byte[] acquire() {
+        byte[] frame;
+        for (int i = 0; (frame = tryAcquire()) == null; i++) {
+            if (!pause(i)) {
+                return null;
             }
         }
+        return frame;
+    }
+
+    /**
+     * Gets the next free frame for the producer to fill without waiting.
+     *
+     * @return the frame to fill, or null if the ring is full.
+     */
+    public byte[] tryAcquire() {
+        if (head - tail > mask) {
+            return null;
+        }
+        return frames[head & mask];
+    }
+
+    /**
+     * Hands the frame returned by acquire over to the consumer.
+     */
+    public void commit() {
+        stamps[head & mask] = System.currentTimeMillis();
+        sequences[head & mask] = produced++;
+        head++;
+    }
+
+    /**
+     * Tells the consumer the producer has thrown a frame away because
+     * the ring was full.  It takes a number, so the frames either side
+     * of it aren't numbered one after the other.
+     */
+    public void drop() {
+        produced++;
+    }
+
+    /**
+     * Copies data into the next free frame and commits it.
+     *
+     * @param data an array of raw sample data.
+     */
+    public void insert(byte[] data) {
+        byte[] frame = acquire();
+        if (frame == null) {
+            // If Thread was interrupted, we just want to terminate.
+            return;
+        }
 
         // Copy the data into the shared buffer.
-        System.arraycopy(data, 0, sample, 0, sample.length);
-        full = true;
-        notifyAll();
+        System.arraycopy(data, 0, frame, 0, frame.length);
+        commit();
     }
 
     /**
-     * A thread-safe method to remove the data from the buffer.
+     * Gets the oldest committed frame, waiting for the producer if there
+     * are none.  The frame must be given back with release once it has
+     * been read.
      *
-     * @return an array containing the raw data.
-     */
-    public synchronized byte[] remove() {
-        while (!full) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                // If Thread was interrupted, we just want to terminate.
+     * @return an array containing the raw data, or null if the thread was
+     * interrupted.
+     */
+    public byte[] remove() {
+        for (int i = 0; head == tail; i++) {
+            if (!pause(i)) {
+                return null;
+            }
+        }
+
+        if (policy == LATEST_WINS) {
+            skip(1);
+        } else if (policy == DROP_OLDEST) {
+            skip((mask + 2) / 2);
+        }
+        if (maxAge > 0) {
+            long now = System.currentTimeMillis();
+            int old = 0;
+            while (head - tail > 1 && now - stamps[tail & mask] > maxAge) {
+                tail++;
+                old++;
+            }
+            count(old);
+        }
+        return frames[tail & mask];
+    }
+
+    /**
+     * Throws away the oldest committed frames unread.  Only the consumer
+     * may call this, and not while it holds a frame.
+     *
+     * @param keep the most frames to leave.
+     * @return the number of frames thrown away.
+     */
+    public int skip(int keep) {
+        int skipped = 0;
+        while (head - tail > keep) {
+            tail++;
+            skipped++;
+        }
+        count(skipped);
+        return skipped;
+    }
+
+    private void count(int skipped) {
+        if (skipped > 0) {
+            shed += skipped;
+            Metrics.count(Metrics.SHED, skipped);
+        }
+    }
+
+    /**
+     * Hands the frame returned by remove back to the producer.
+     */
+    public void release() {
+        tail++;
+    }
+
+    /**
+     * Returns when the frame remove returns was committed, so the time
+     * it spent waiting can be measured.
+     *
+     * @return the time in ms, from System.currentTimeMillis.
+     */
+    public long getTimestamp() {
+        return stamps[tail & mask];
+    }
+
+    /**
+     * Returns the number of the frame remove returns.  Frames are
+     * numbered from 0 in the order they were made, so a jump means
+     * frames were dropped or shed in between.
+     *
+     * @return the sequence number of the frame.
+     */
+    public int getSequence() {
+        return sequences[tail & mask];
+    }
+
+    /**
+     * Returns the number of committed frames not yet released.
+     *
+     * @return the number of frames waiting.
+     */
+    public int available() {
+        return head - tail;
+    }
+
+    /**
+     * Waits a little while for the other thread.  The first few times we
+     * just yield, as the wait is usually short, then we back off to
+     * sleeping, doubling the sleep each time up to MAX_SLEEP_MS.  An
+     * interrupt is noticed once we start sleeping.
+     *
+     * @param attempt how many times we have already waited.
+     * @return false if the thread was interrupted.
+     */
+    private boolean pause(int attempt) {
+        try {
+            if (attempt < SPINS) {
+                Thread.yield();
+            } else {
+                Thread.sleep(Math.min(1L << Math.min(attempt - SPINS, 30), MAX_SLEEP_MS));
             }
+        } catch (InterruptedException e) {
+            // If Thread was interrupted, we just want to terminate.
+            return false;
         }
-        full = false;
-        notifyAll();
-        return sample;
+        return true;
     }
 }
@@ -0,0 +1,224 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+
+public class BufferTest extends TestCase {
+
+    private static final int FRAME_SIZE = 256;
+    private static final int FRAMES = 2000;
+
+    public BufferTest() {
+    }
+
+    public BufferTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Frames must arrive in order, whole, and without being overwritten
+     * while the consumer still holds them.
+     */
+    public void testHandoff() throws InterruptedException {
+        System.out.println("handoff");
+        final Buffer instance = new Buffer(FRAME_SIZE, 3);
+
+        Thread producer = new Thread() {
+            public void run() {
+                for (int i = 0; i < FRAMES; i++) {
+                    byte[] frame = instance.acquire();
+                    for (int j = 0; j < frame.length; j++) {
+                        frame[j] = (byte)i;
+                    }
+                    instance.commit();
+                }
+            }
+        };
+        producer.start();
+
+        for (int i = 0; i < FRAMES; i++) {
+            byte[] frame = instance.remove();
+            for (int j = 0; j < frame.length; j++) {
+                if (frame[j] != (byte)i) {
+                    fail("frame " + i + " byte " + j + " was " + frame[j]);
+                }
+            }
+            // Hold on to the frame for a while to give the producer a
+            // chance to overwrite it.
+            if (i % 100 == 0) {
+                Thread.yield();
+                for (int j = 0; j < frame.length; j++) {
+                    assertEquals("held frame " + i, (byte)i, frame[j]);
+                }
+            }
+            instance.release();
+        }
+        producer.join();
+        assertEquals(0, instance.available());
+    }
+
+    /**
+     * A consumer that has given up yielding and backed off to sleeping
+     * must still notice a frame about as soon as its longest sleep allows.
+     */
+    public void testWake() throws InterruptedException {
+        System.out.println("wake");
+        final Buffer instance = new Buffer(FRAME_SIZE, 2);
+        final long[] woken = new long[1];
+
+        Thread consumer = new Thread() {
+            public void run() {
+                if (instance.remove() != null) {
+                    woken[0] = System.currentTimeMillis();
+                    instance.release();
+                }
+            }
+        };
+        consumer.start();
+
+        // Long enough for the consumer to stop yielding.
+        Thread.sleep(200);
+        instance.acquire();
+        long committed = System.currentTimeMillis();
+        instance.commit();
+        consumer.join();
+        assertTrue("woken after " + (woken[0] - committed) + " ms", woken[0] - committed < 100);
+    }
+
+    /**
+     * The capacity is rounded up to a power of two and the producer gets
+     * no frames while the ring is full.
+     */
+    public void testCapacity() {
+        System.out.println("capacity");
+        Buffer instance = new Buffer(4, 3);
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(instance.acquire());
+            instance.commit();
+        }
+        assertEquals(4, instance.available());
+
+        // A full ring makes the producer wait; interrupt it instead.
+        Thread.currentThread().interrupt();
+        assertNull(instance.acquire());
+
+        instance.remove();
+        instance.release();
+        assertEquals(3, instance.available());
+        assertNotNull(instance.acquire());
+    }
+
+    /**
+     * Test of FrameOutputStream, which slices a stream into frames and
+     * counts the samples it has to drop when the buffer is full.
+     */
+    public void testFrameOutputStream() {
+        System.out.println("FrameOutputStream");
+        Buffer buffer = new Buffer(4, 2);
+        FrameOutputStream instance = new FrameOutputStream(buffer, 4, false);
+
+        byte[] data = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        instance.write(data, 0, 3);
+        assertEquals(0, buffer.available());
+        instance.write(data, 3, 5);
+        assertEquals(2, buffer.available());
+
+        // The ring is full so the next frame is dropped.
+        instance.write(data, 8, 2);
+        instance.write(10);
+        assertEquals(0, instance.getDroppedSamples());
+        instance.write(11);
+        assertEquals(2, buffer.available());
+        assertEquals(2, instance.getDroppedSamples());
+
+        byte[] frame = buffer.remove();
+        assertEquals(0, buffer.getSequence());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, frame[i]);
+        }
+        buffer.release();
+        frame = buffer.remove();
+        assertEquals(1, buffer.getSequence());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i + 4, frame[i]);
+        }
+        buffer.release();
+
+        // Once there is room again frames start at the next frame boundary.
+        // The dropped frame still took a number, so the reader sees a gap.
+        instance.write(data, 0, 4);
+        assertEquals(1, buffer.available());
+        frame = buffer.remove();
+        assertEquals(3, buffer.getSequence());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, frame[i]);
+        }
+    }
+
+    /**
+     * Each policy must hand out the right frame and count what it sheds.
+     */
+    public void testPolicy() throws InterruptedException {
+        System.out.println("policy");
+        Buffer instance = fill(Buffer.LATEST_WINS, 0, 3);
+        assertEquals(2, instance.remove()[0]);
+        assertEquals(2, instance.getShed());
+        assertEquals(2, instance.getSequence());
+
+        instance = fill(Buffer.DROP_OLDEST, 0, 4);
+        assertEquals(2, instance.remove()[0]);
+        assertEquals(2, instance.getShed());
+        instance.release();
+        assertEquals(3, instance.remove()[0]);
+
+        instance = fill(Buffer.COALESCE, 0, 4);
+        assertEquals(0, instance.remove()[0]);
+        instance.release();
+        assertEquals(2, instance.skip(1));
+        assertEquals(3, instance.remove()[0]);
+        assertEquals(2, instance.getShed());
+
+        instance = fill(Buffer.BLOCK, 0, 4);
+        assertEquals(0, instance.remove()[0]);
+        assertEquals(0, instance.getShed());
+
+        // Frames past the age limit go, but never the newest.
+        instance = fill(Buffer.BLOCK, 20, 2);
+        Thread.sleep(50);
+        assertEquals(1, instance.remove()[0]);
+        assertEquals(1, instance.getShed());
+        instance.release();
+        byte[] frame = instance.acquire();
+        frame[0] = 9;
+        instance.commit();
+        assertEquals(9, instance.remove()[0]);
+    }
+
+    /**
+     * Creates a Buffer of 4 frames and commits numbered frames to it.
+     */
+    private Buffer fill(int policy, long maxAge, int frames) {
+        Buffer buffer = new Buffer(4, 4);
+        buffer.setPolicy(policy, maxAge);
+        for (int i = 0; i < frames; i++) {
+            buffer.acquire()[0] = (byte)i;
+            buffer.commit();
+        }
+        return buffer;
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new BufferTest("testHandoff", new TestMethod(){ public void run(TestCase tc) throws Throwable {((BufferTest) tc).testHandoff();}}));
+        suite.addTest(new BufferTest("testWake", new TestMethod(){ public void run(TestCase tc) throws Throwable {((BufferTest) tc).testWake();}}));
+        suite.addTest(new BufferTest("testCapacity", new TestMethod(){ public void run(TestCase tc) {((BufferTest) tc).testCapacity();}}));
+        suite.addTest(new BufferTest("testFrameOutputStream", new TestMethod(){ public void run(TestCase tc) {((BufferTest) tc).testFrameOutputStream();}}));
+        suite.addTest(new BufferTest("testPolicy", new TestMethod(){ public void run(TestCase tc) throws Throwable {((BufferTest) tc).testPolicy();}}));
+        return suite;
+    }
+}
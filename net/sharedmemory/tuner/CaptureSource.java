@@ -0,0 +1,118 @@
+/*
+ * CaptureSource.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+import java.io.*;
+import javax.microedition.media.*;
+import javax.microedition.media.control.RecordControl;
+
+/**
+ * Records 16 bit mono samples from the device microphone, the format
+ * the rest of the pipeline expects.  It either records a frame
+ * at a time, starting and stopping the recording for each one, or keeps
+ * one recording running that writes straight to the sink.
+ *
+ * @author David Keen
+ */
+public class CaptureSource implements AudioSource {
+    private int rate;
+    private boolean streaming;
+
+    private Player capturePlayer;
+    private RecordControl recordControl;
+    private ByteArrayOutputStream bos;  // Used when recording a frame at a time.
+    private OutputStream sink;
+
+    /**
+     * Creates a new instance of CaptureSource
+     *
+     * @param rate the sample rate in Hz.
+     * @param streaming true to record continuously.
+     * @throws IOException if the capture player can't be created.
+     */
+    public CaptureSource(int rate, boolean streaming) throws IOException {
+        this.rate = rate;
+        this.streaming = streaming;
+
+        try {
+            capturePlayer = Manager.createPlayer(
+                    "capture://audio?encoding=pcm&rate=" + rate + "&bits=16&channels=1");
+
+            capturePlayer.realize();
+            recordControl = (RecordControl)capturePlayer.getControl("RecordControl");
+        } catch (MediaException e) {
+            throw new IOException(e.getMessage());
+        }
+        if (recordControl == null) {
+            throw new IOException("Recording is not supported");
+        }
+    }
+
+    public void open(OutputStream sink) throws IOException {
+        this.sink = sink;
+        if (!streaming) {
+            // Create the internal buffer for the recording
+            bos = new ByteArrayOutputStream();
+            return;
+        }
+
+        // The one recording session writes straight to the sink.
+        try {
+            recordControl.setRecordStream(sink);
+            capturePlayer.start();
+            recordControl.startRecord();
+        } catch (MediaException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    public boolean deliver(int length) throws IOException, InterruptedException {
+        // Buffer filling time (s) is length / sample rate (* 1000ms).
+        // Two bytes per sample.
+        int recordingTime = 1000 * length / (2 * rate);
+
+        if (streaming) {
+            // The capture runs by itself; we just wait for it.
+            Thread.sleep(recordingTime);
+            return true;
+        }
+
+        try {
+            recordControl.setRecordStream(bos);
+            capturePlayer.start();
+            recordControl.startRecord();
+            Thread.sleep(recordingTime);
+            recordControl.stopRecord();
+            recordControl.commit();
+        } catch (MediaException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        // Each recording makes one frame so pad or truncate it to length.
+        byte[] recording = bos.toByteArray();
+        int n = Math.min(length, recording.length);
+        sink.write(recording, 0, n);
+        for (; n < length; n++) {
+            sink.write(0);
+        }
+
+        // Reset the ByteArrayOutputStream for reuse.
+        bos.reset();
+        return true;
+    }
+
+    public boolean isRealTime() {
+        // A frame at a time recording waits for us between frames.
+        return streaming;
+    }
+
+    public void close() {
+        if (streaming) {
+            recordControl.stopRecord();
+        }
+        capturePlayer.close();
+    }
+}
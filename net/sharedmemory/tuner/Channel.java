@@ -0,0 +1,125 @@
+/*
+ * Channel.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * One audio stream being tuned by a TuningEngine.  A channel has its own
+ * Buffer, PitchDetector and steady-state filter, so channels share
+ * nothing but the engine's worker threads.  The engine makes sure only
+ * one worker analyses a channel at a time.
+ *
+ * @author David Keen
+ */
+public class Channel {
+    private TuningEngine engine;
+    private int frameLength;
+    private int rate;
+
+    private Buffer buffer;
+    private FrameOutputStream sink;
+    private PitchDetector detector;
+
+    private double[] freq;      // The last two frequencies found.
+    private volatile double frequency;  // The last steady frequency.
+    private volatile long frames;       // Frames analysed.
+
+    boolean scheduled;          // Queued or being analysed; engine's lock.
+
+    /**
+     * Creates a new instance of Channel.  Channels are made by
+     * TuningEngine.addChannel.
+     *
+     * @param engine the engine that analyses the frames.
+     * @param detector the detector for this channel alone.
+     * @param frameLength the number of bytes in each frame.
+     * @param rate the sample rate in Hz.
+     * @param block true to make the writer wait when the analysis falls
+     * behind, false to drop frames.
+     */
+    Channel(TuningEngine engine, PitchDetector detector, int frameLength, int rate, boolean block) {
+        this.engine = engine;
+        this.detector = detector;
+        this.frameLength = frameLength;
+        this.rate = rate;
+
+        buffer = new Buffer(frameLength);
+        sink = new FrameOutputStream(buffer, frameLength, block) {
+            protected void committed() {
+                Channel.this.engine.schedule(Channel.this);
+            }
+        };
+        freq = new double[2];
+    }
+
+    /**
+     * Returns the stream the samples should be written to.  It must only
+     * be written by one thread.
+     *
+     * @return the sink for 16 bit samples.
+     */
+    public FrameOutputStream getSink() {
+        return sink;
+    }
+
+    /**
+     * Returns the frequency of the last note held steady for two frames.
+     * Note.midiNote and Note.cents turn it into a note.
+     *
+     * @return the frequency in Hz, or 0 if there hasn't been one yet.
+     */
+    public double getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Returns how many frames have been analysed.
+     *
+     * @return the number of frames.
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns how many seconds of audio have been analysed.
+     *
+     * @return the time in seconds.
+     */
+    public double getSeconds() {
+        // Two bytes per sample.
+        return frames * (frameLength / 2) / (double)rate;
+    }
+
+    /**
+     * Returns how many frames are waiting to be analysed.
+     *
+     * @return the number of frames.
+     */
+    int available() {
+        return buffer.available();
+    }
+
+    /**
+     * Analyses the frames that are waiting.  Only a worker thread that
+     * has taken the channel from the engine may call this.
+     *
+     * @param count the most frames to analyse, so other channels get a turn.
+     */
+    void process(int count) {
+        for (int i = 0; i < count && buffer.available() > 0; i++) {
+            freq[0] = freq[1];
+            freq[1] = detector.analyse(buffer.remove());
+            buffer.release();
+
+            // The same steady-state filter as the Processor, but over
+            // each frame and the one before.
+            if (Math.abs(freq[1] - freq[0]) < 10.0) {
+                frequency = (freq[0] + freq[1]) / 2;
+            }
+            frames++;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * ConstantQ.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * A constant Q transform, whose bins are spaced evenly in pitch rather
+ * than in frequency, as notes are.  Each bin is as wide as the gap to the
+ * next, so a bin holds the same fraction of a semitone at any pitch, and
+ * the bins are centred on the Note frequencies.
+ *
+ * It is worked out from one FFT of the frame, as Brown and Puckette
+ * describe.  Each bin is a windowed complex sinusoid, as long as the bin
+ * needs, and its FFT is almost all in a few FFT bins around its centre.
+ * Those FFT bins are kept, once, as the bin's spectral kernel, and a bin
+ * is just the sum of the FFT bins times its kernel.  A bin can't be
+ * longer than the frame, so the lowest bins may be wider than the rest.
+ *
+ * @author David Keen
+ */
+public class ConstantQ {
+
+    // Spectral kernel values below this fraction of the kernel's peak are
+    // left out.
+    private static final double THRESHOLD = 0.01;
+
+    private int binsPerSemitone;
+    private int lowNote;
+    private double lowHz;       // The frequency of bin 0.
+    private double q;           // The frequency of a bin over its width.
+
+    // The kernels of all the bins, one after another.  Bin k covers FFT
+    // bins first[k] onwards, and its values are kr[offset[k]] to
+    // kr[offset[k + 1] - 1], conjugated ready to multiply by.
+    private int[] first;
+    private int[] offset;
+    private double[] kr;
+    private double[] ki;
+
+    private double[] noise;     // The power of unit white noise in each bin.
+
+    /**
+     * Creates a new instance of ConstantQ, working out the kernels for
+     * the current Note reference.
+     *
+     * @param bits the frame has 2 raised to this power samples.
+     * @param rate the sample rate in Hz.
+     * @param lowNote the MIDI note of the lowest bin.
+     * @param highNote the MIDI note of the highest whole note bin, which
+     * should be below half the sample rate.
+     * @param binsPerSemitone how many bins to divide each semitone into.
+     */
+    public ConstantQ(int bits, int rate, int lowNote, int highNote, int binsPerSemitone) {
+        this.binsPerSemitone = binsPerSemitone;
+        this.lowNote = lowNote;
+        lowHz = Note.frequency(lowNote);
+        q = 1.0 / (MathUtils.pow2(1.0 / (12 * binsPerSemitone)) - 1.0);
+
+        int n = 1 << bits;
+        int bins = (highNote - lowNote) * binsPerSemitone + 1;
+        first = new int[bins];
+        offset = new int[bins + 1];
+        noise = new double[bins];
+
+        // Work the kernels out in full, then keep the part above the
+        // threshold of the bins below the Nyquist frequency.
+        FFT fft = new FFT(bits);
+        double[] xr = new double[n];
+        double[] xi = new double[n];
+        double[][] keepR = new double[bins][];
+        double[][] keepI = new double[bins][];
+        int total = 0;
+        for (int k = 0; k < bins; k++) {
+            double hz = frequency(k);
+            int length = Math.min((int)Math.ceil(q * rate / hz), n);
+            noise[k] = kernel(xr, xi, length, hz / rate);
+            fft.doFFT(xr, xi, false);
+
+            double peak = 0.0;
+            for (int j = 0; j < n / 2; j++) {
+                peak = Math.max(peak, xr[j] * xr[j] + xi[j] * xi[j]);
+            }
+            double floor = THRESHOLD * THRESHOLD * peak;
+            int lo = 0;
+            int hi = n / 2 - 1;
+            while (lo < hi && xr[lo] * xr[lo] + xi[lo] * xi[lo] < floor) {
+                lo++;
+            }
+            while (hi > lo && xr[hi] * xr[hi] + xi[hi] * xi[hi] < floor) {
+                hi--;
+            }
+
+            // doFFT and doRealFFT both scale by 1/n, so the sum over the
+            // FFT bins is n times too small.
+            first[k] = lo;
+            keepR[k] = new double[hi - lo + 1];
+            keepI[k] = new double[hi - lo + 1];
+            for (int j = lo; j <= hi; j++) {
+                keepR[k][j - lo] = n * xr[j];
+                keepI[k][j - lo] = -n * xi[j];
+            }
+            total += hi - lo + 1;
+        }
+
+        kr = new double[total];
+        ki = new double[total];
+        for (int k = 0; k < bins; k++) {
+            offset[k + 1] = offset[k] + keepR[k].length;
+            System.arraycopy(keepR[k], 0, kr, offset[k], keepR[k].length);
+            System.arraycopy(keepI[k], 0, ki, offset[k], keepI[k].length);
+        }
+    }
+
+    /**
+     * Works out the power in each bin from the FFT of a frame.
+     *
+     * @param xr the real parts of the bins, from FFT.doRealFFT.
+     * @param xi the imaginary parts of the bins.
+     * @param power the array to hold the power of each bin.
+     */
+    public void transform(double[] xr, double[] xi, double[] power) {
+        for (int k = 0; k < power.length; k++) {
+            double re = 0.0;
+            double im = 0.0;
+            for (int i = offset[k], j = first[k]; i < offset[k + 1]; i++, j++) {
+                re += xr[j] * kr[i] - xi[j] * ki[i];
+                im += xr[j] * ki[i] + xi[j] * kr[i];
+            }
+            power[k] = re * re + im * im;
+        }
+    }
+
+    /**
+     * Returns the number of bins.
+     *
+     * @return the number of bins.
+     */
+    public int getLength() {
+        return first.length;
+    }
+
+    /**
+     * Returns how many bins each semitone is divided into.
+     *
+     * @return the bins per semitone.
+     */
+    public int getBinsPerSemitone() {
+        return binsPerSemitone;
+    }
+
+    /**
+     * Returns how many spectral kernel values each transform multiplies.
+     *
+     * @return the number of values kept.
+     */
+    public int getKernelSize() {
+        return kr.length;
+    }
+
+    /**
+     * Returns the power white noise of unit variance puts in a bin.  A
+     * shorter bin is wider, so a higher bin lets in more noise.
+     *
+     * @param bin the bin.
+     * @return the noise power.
+     */
+    public double getNoise(int bin) {
+        return noise[bin];
+    }
+
+    /**
+     * Returns the bin of a MIDI note.
+     *
+     * @param midiNote the note.
+     * @return the bin, which may be out of range.
+     */
+    public int bin(int midiNote) {
+        return (midiNote - lowNote) * binsPerSemitone;
+    }
+
+    /**
+     * Returns the centre frequency of a bin, or of a point between bins.
+     *
+     * @param bin the bin.
+     * @return the frequency in Hz.
+     */
+    public double frequency(double bin) {
+        return lowHz * MathUtils.pow2(bin / (12 * binsPerSemitone));
+    }
+
+    /**
+     * Fills in a Hamming windowed complex sinusoid in the middle of the
+     * frame, scaled so that a sinusoid of amplitude A at its frequency
+     * comes out as A / 2, as it does from the FFT.
+     *
+     * @return the sum of the squared magnitudes.
+     */
+    private static double kernel(double[] xr, double[] xi, int length, double cycles) {
+        int start = (xr.length - length) / 2;
+        for (int i = 0; i < xr.length; i++) {
+            xr[i] = 0.0;
+            xi[i] = 0.0;
+        }
+        double sum = 0.0;
+        for (int i = 0; i < length; i++) {
+            sum += 0.54 - 0.46 * Math.cos(2.0 * Math.PI * i / (length - 1));
+        }
+        double energy = 0.0;
+        for (int i = 0; i < length; i++) {
+            double w = (0.54 - 0.46 * Math.cos(2.0 * Math.PI * i / (length - 1))) / sum;
+            double angle = 2.0 * Math.PI * cycles * (start + i);
+            xr[start + i] = w * Math.cos(angle);
+            xi[start + i] = w * Math.sin(angle);
+            energy += w * w;
+        }
+        return energy;
+    }
+}
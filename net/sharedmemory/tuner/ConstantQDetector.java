@@ -0,0 +1,182 @@
+/*
+ * ConstantQDetector.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * Finds the pitch of a frame from its constant Q transform.  The
+ * harmonics of a note are a fixed number of bins above it whatever the
+ * note, an octave for the second and an octave and a fifth for the third,
+ * so the Harmonic Product Spectrum is a product of the transform and two
+ * shifted copies of it.  The bins are as fine at the bottom string of a
+ * bass as at the top of a violin, where the FFT's are a semitone wide at
+ * the bottom and a few cents at the top.
+ *
+ * @author David Keen
+ */
+public class ConstantQDetector implements PitchDetector {
+
+    // The length of the decimation filter.
+    private static final int FILTER_TAPS = 31;
+
+    // Bins to a semitone.  Fewer, wider bins are shorter and let in more
+    // noise, and get more notes an octave out.
+    public static final int BINS_PER_SEMITONE = 12;
+
+    private int minBin;         // The lowest fundamental scanned.
+    private int maxBin;         // The highest fundamental scanned.
+    private int octave;         // Bins from the fundamental to each harmonic.
+    private int fifth;          // Bins from the fundamental to the third.
+
+    private Decimator decimator;  // Band limits the samples, or null.
+    private double[] decoded;   // The samples, decimated if need be.
+
+    private FFT fft;
+    private ConstantQ cq;
+    private double[] xr;        // Array of real parts (even samples in).
+    private double[] xi;        // Array of complex parts (odd samples in).
+    private double[] power;     // The power in each constant Q bin.
+    private double[] weight;    // Evens out the noise in each bin.
+    private double[] level;     // The power over the noise in each bin.
+    private double[] spectrum;  // The magnitudes, for display.
+    private boolean magnitudes; // Whether spectrum is up to date.
+
+    /**
+     * Creates a new instance of ConstantQDetector.
+     *
+     * @param power there are 2 raised to this power bytes, so half as many
+     * 16 bit samples, in each frame.
+     * @param rate the sample rate in Hz.
+     * @param decimation the sample rate is divided by this, a power of 2,
+     * or 1 to transform the frame as it is.
+     */
+    public ConstantQDetector(int power, int rate, int decimation) {
+        // Two bytes per sample.
+        int bits = power - 1;
+        for (int d = decimation; d > 1; d /= 2) {
+            bits--;
+        }
+        int fftLength = 1 << bits;
+        rate /= decimation;
+
+        if (decimation > 1) {
+            decimator = new Decimator(decimation, FILTER_TAPS);
+        }
+        decoded = new double[fftLength];
+
+        // The bins run from the lowest note scanned up to the highest
+        // note that is clear of the Nyquist frequency.
+        octave = 12 * BINS_PER_SEMITONE;
+        fifth = (int)(19.02 * BINS_PER_SEMITONE + 0.5);
+        int low = Note.midiNote(Processor.MIN_HZ);
+        int high = Note.midiNote(0.45 * rate);
+        cq = new ConstantQ(bits, rate, low, high, BINS_PER_SEMITONE);
+
+        // Fundamentals whose third harmonic is in range, up to MAX_HZ.
+        minBin = 1;
+        maxBin = Math.min(cq.getLength() - 2 - fifth, cq.bin(Note.midiNote(Processor.MAX_HZ)));
+
+        fft = new FFT(bits);
+        xr = new double[fftLength / 2];
+        xi = new double[fftLength / 2];
+        this.power = new double[cq.getLength()];
+        spectrum = new double[cq.getLength()];
+
+        // The higher bins are wider and let in more noise, which would
+        // make a noisy frame look like a high note.  Evening the noise out
+        // fully favours the notes an octave down instead, so it is evened
+        // out halfway, on a log scale.
+        weight = new double[cq.getLength()];
+        level = new double[cq.getLength()];
+        for (int k = 0; k < weight.length; k++) {
+            weight[k] = Math.sqrt(cq.getNoise(0) / cq.getNoise(k));
+        }
+    }
+
+    /**
+     * Finds the fundamental frequency of a frame of 16 bit samples.
+     *
+     * @param samples the raw samples, 2^power bytes of them.
+     * @return the frequency in Hz.
+     */
+    public double analyse(byte[] samples) {
+        if (decimator == null) {
+            Pcm.decode(samples, decoded);
+        } else {
+            decimator.decimate(samples, decoded);
+        }
+        fft.populateRealArrays(xr, xi, decoded);
+        fft.doRealFFT(xr, xi);
+        cq.transform(xr, xi, power);
+        magnitudes = false;
+        for (int k = 0; k < level.length; k++) {
+            level[k] = power[k] * weight[k];
+        }
+
+        // The Harmonic Product Spectrum, shifting rather than stretching.
+        int max = minBin;
+        double best = -1.0;
+        for (int k = minBin; k <= maxBin; k++) {
+            double product = level[k] * level[k + octave] * level[k + fifth];
+            if (product > best) {
+                best = product;
+                max = k;
+            }
+        }
+        if (best <= 0.0) {
+            return 0.0;
+        }
+
+        // Interpolate at the strongest harmonic, which is the one best
+        // above the noise.
+        int peak = max;
+        int harmonic = 1;
+        if (power[max + octave] > power[peak]) {
+            peak = max + octave;
+            harmonic = 2;
+        }
+        if (power[max + fifth] > power[peak]) {
+            peak = max + fifth;
+            harmonic = 3;
+        }
+
+        // The product may peak a bin away from the harmonic itself, but
+        // the peak must keep a bin either side to interpolate with.
+        if (peak < power.length - 2 && power[peak + 1] > power[peak]) {
+            peak++;
+        } else if (peak > 1 && power[peak - 1] > power[peak]) {
+            peak--;
+        }
+        double delta = FFT.interpolatePeak(Math.sqrt(power[peak - 1]), Math.sqrt(power[peak]),
+                Math.sqrt(power[peak + 1]));
+        return cq.frequency(peak + delta) / harmonic;
+    }
+
+    /**
+     * Returns the constant Q spectrum of the last frame analysed, a few
+     * bins to each semitone from the lowest note scanned.  The array is
+     * reused by the next call to analyse.
+     *
+     * @return the magnitude of each bin.
+     */
+    public double[] getSpectrum() {
+        if (!magnitudes) {
+            for (int i = 0; i < power.length; i++) {
+                spectrum[i] = Math.sqrt(power[i]);
+            }
+            magnitudes = true;
+        }
+        return spectrum;
+    }
+
+    /**
+     * Returns the transform the detector uses.
+     *
+     * @return the ConstantQ.
+     */
+    public ConstantQ getTransform() {
+        return cq;
+    }
+}
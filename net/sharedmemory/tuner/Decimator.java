@@ -0,0 +1,109 @@
+/*
+ * Decimator.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * A low pass FIR filter that reduces the sample rate of a frame by a
+ * whole factor, so the FFT only has to cover the band we scan.
+ * Only the outputs that are kept are computed, which is what the
+ * polyphase form of the filter does.  The filter is a Hamming windowed
+ * sinc; it is symmetric, so each pair of taps costs one multiply, and
+ * for a factor of 2 every other tap is zero and is skipped.
+ *
+ * @author David Keen
+ */
+public class Decimator {
+
+    private int factor;         // Keep one output in this many.
+    private double centre;      // The centre tap.
+    private int[] offsets;      // Distance of each non-zero tap pair from the centre.
+    private double[] taps;      // The coefficient of each tap pair.
+    private int reach;          // The furthest offset.
+    private double[] padded;    // The frame with zeros either side.
+
+    /**
+     * Creates a new instance of Decimator.
+     *
+     * @param factor the sample rate is divided by this.
+     * @param length the number of taps, which should be odd.  More taps
+     * give a sharper cut off.
+     */
+    public Decimator(int factor, int length) {
+        this.factor = factor;
+        reach = length / 2;
+
+        // Cut off at the new Nyquist frequency.
+        double cutoff = 0.5 / factor;
+        centre = 2.0 * cutoff;
+
+        int pairs = 0;
+        double[] h = new double[reach + 1];
+        for (int j = 1; j <= reach; j++) {
+            double t = Math.PI * 2.0 * cutoff * j;
+            double window = 0.54 + 0.46 * Math.cos(Math.PI * j / (reach + 1));
+            h[j] = 2.0 * cutoff * Math.sin(t) / t * window;
+            if (Math.abs(h[j]) > 1e-12) {
+                pairs++;
+            }
+        }
+
+        // Scale for unity gain at DC.
+        double gain = centre;
+        for (int j = 1; j <= reach; j++) {
+            gain += 2.0 * h[j];
+        }
+        centre /= gain;
+
+        offsets = new int[pairs];
+        taps = new double[pairs];
+        for (int j = 1, k = 0; j <= reach; j++) {
+            if (Math.abs(h[j]) > 1e-12) {
+                offsets[k] = j;
+                taps[k++] = h[j] / gain;
+            }
+        }
+    }
+
+    /**
+     * Filters and decimates a frame.  Samples beyond either end of the
+     * frame count as zero.
+     *
+     * @param samples the raw 16 bit samples, two bytes each.
+     * @param out the array to hold the filtered samples, the number of
+     * samples divided by the factor of them.
+     */
+    public void decimate(byte[] samples, double[] out) {
+        // Decode the frame into the middle of the zero padded history so
+        // the filter never has to check for the ends.
+        int length = samples.length / 2;
+        if (padded == null || padded.length != length + 2 * reach) {
+            padded = new double[length + 2 * reach];
+        }
+        for (int i = 0, j = 0; i < length; i++, j += 2) {
+            padded[reach + i] = (samples[j] & 0xff) | (samples[j + 1] << 8);
+        }
+
+        double[] x = padded;
+        double[] h = taps;
+        int[] o = offsets;
+        for (int m = 0, i = reach; m < out.length; m++, i += factor) {
+            double sum = centre * x[i];
+            for (int k = 0; k < h.length; k++) {
+                sum += h[k] * (x[i - o[k]] + x[i + o[k]]);
+            }
+            out[m] = sum;
+        }
+    }
+
+    /**
+     * Returns the factor the sample rate is divided by.
+     *
+     * @return the decimation factor.
+     */
+    public int getFactor() {
+        return factor;
+    }
+}
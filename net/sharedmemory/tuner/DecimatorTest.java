@@ -0,0 +1,81 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+
+public class DecimatorTest extends TestCase {
+
+    private static final int LENGTH = 2048;
+
+    public DecimatorTest() {
+    }
+
+    public DecimatorTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Test of decimate method, of class net.sharedmemory.tuner.Decimator.
+     * The harmonics we scan must pass and anything that would alias onto
+     * them must be stopped.
+     */
+    public void testdecimate() {
+        System.out.println("decimate");
+        Decimator instance = new Decimator(2, 31);
+        double[] out = new double[LENGTH / 2];
+
+        // Frequencies as a fraction of the input sample rate.
+        instance.decimate(tone(0.02), out);
+        assertTrue("low " + rms(out), Math.abs(rms(out) - rms(0.02)) < 0.01 * rms(0.02));
+        instance.decimate(tone(0.18), out);
+        assertTrue("pass band " + rms(out), Math.abs(rms(out) - rms(0.18)) < 0.05 * rms(0.18));
+        instance.decimate(tone(0.32), out);
+        assertTrue("stop band " + rms(out), rms(out) < 0.01 * rms(0.32));
+    }
+
+    /**
+     * Creates LENGTH samples of a tone, as 16 bit little-endian PCM.
+     */
+    private byte[] tone(double frequency) {
+        byte[] samples = new byte[2 * LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            int sample = (int)(10000.0 * Math.sin(2.0 * Math.PI * frequency * i));
+            samples[2 * i] = (byte)sample;
+            samples[2 * i + 1] = (byte)(sample >> 8);
+        }
+        return samples;
+    }
+
+    /**
+     * The RMS of the undecimated tone, away from the ends.
+     */
+    private double rms(double frequency) {
+        double[] samples = new double[LENGTH];
+        Pcm.decode(tone(frequency), samples);
+        double[] x = new double[LENGTH / 2];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = samples[2 * i];
+        }
+        return rms(x);
+    }
+
+    private double rms(double[] x) {
+        double sum = 0.0;
+        int n = 0;
+        for (int i = 32; i < x.length - 32; i++, n++) {
+            sum += x[i] * x[i];
+        }
+        return Math.sqrt(sum / n);
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new DecimatorTest("testdecimate", new TestMethod(){ public void run(TestCase tc) {((DecimatorTest) tc).testdecimate();}}));
+        return suite;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * DisplaySpectrum.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * The spectrum as TunerCanvas draws it, one line height for each pixel
+ * column.  The analysis thread reduces each new spectrum into one of two
+ * buffers and publishes it, and paint draws the last one published.  A
+ * buffer is never written while it is being painted, so paint never sees
+ * half of one spectrum and half of the next, and neither thread waits for
+ * the other: if paint is still drawing the older buffer when a spectrum
+ * comes in, that spectrum is skipped.
+ *
+ * Only one thread may reduce spectra.
+ *
+ * @author David Keen
+ */
+public class DisplaySpectrum {
+
+    // The magnitudes are scaled by this to give the lines a decent height.
+    private static final int SCALE = 40;
+
+    private int height;         // The tallest line in pixels.
+    private int[][] buffers;    // Line heights, twice over.
+    private int front = -1;     // The buffer last published, or -1.
+    private int painting = -1;  // The buffer being painted, or -1.
+    private volatile long skipped;  // Spectra skipped while paint was behind.
+
+    /**
+     * Creates a new instance of DisplaySpectrum.
+     *
+     * @param width the number of columns.
+     * @param height the tallest line in pixels.
+     */
+    public DisplaySpectrum(int width, int height) {
+        this.height = height;
+        buffers = new int[2][width];
+    }
+
+    /**
+     * Reduces a spectrum to a line height for each column and publishes
+     * it.  A linear spectrum is drawn from Processor.MIN_HZ to MAX_HZ, a
+     * bin to a Hz; a spectrum in pitch is spread across all the columns.
+     * The spectrum isn't kept, so it can be overwritten as soon as this
+     * returns.
+     *
+     * @param spectrum the magnitude spectrum.
+     * @param logarithmic true if the bins are spaced evenly in pitch
+     * rather than frequency.
+     * @return true if any line is different from the last spectrum.
+     */
+    public boolean reduce(double[] spectrum, boolean logarithmic) {
+        int back = claim();
+        if (back < 0) {
+            skipped++;
+            return false;
+        }
+        int[] columns = buffers[back];
+        int width = columns.length;
+
+        // Average the bins that fall in each column.
+        if (logarithmic) {
+            int factor = Math.max(spectrum.length / width, 1);
+            for (int i = 0; i < width; i++) {
+                columns[i] = line(spectrum, i * (spectrum.length - factor) / Math.max(width - 1, 1), factor);
+            }
+        } else {
+            int factor = Math.max((int)(Processor.MAX_HZ - Processor.MIN_HZ) / width, 1);
+            for (int i = 0, j = (int)Processor.MIN_HZ; i < width; i++, j += factor) {
+                columns[i] = line(spectrum, j, factor);
+            }
+        }
+        return publish(back);
+    }
+
+    /**
+     * Returns the line heights last published and keeps them from being
+     * written until release is called.  Only paint should call this.
+     *
+     * @return the height of each column in pixels, or null if nothing has
+     * been published.
+     */
+    public synchronized int[] acquire() {
+        painting = front;
+        return (front < 0) ? null : buffers[front];
+    }
+
+    /**
+     * Lets the line heights from acquire be written again.
+     */
+    public synchronized void release() {
+        painting = -1;
+    }
+
+    /**
+     * Returns how many spectra were skipped because paint was behind.
+     *
+     * @return the number of spectra.
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Returns the buffer that is neither published nor being painted.
+     *
+     * @return the buffer, or -1 if paint still has the other one.
+     */
+    private synchronized int claim() {
+        int back = (front == 0) ? 1 : 0;
+        return (back == painting) ? -1 : back;
+    }
+
+    /**
+     * Publishes a buffer.
+     *
+     * @return true if it differs from the one it replaces.
+     */
+    private synchronized boolean publish(int buffer) {
+        boolean changed = true;
+        if (front >= 0) {
+            int[] columns = buffers[buffer];
+            int[] last = buffers[front];
+            changed = false;
+            for (int i = 0; i < columns.length && !changed; i++) {
+                changed = columns[i] != last[i];
+            }
+        }
+        front = buffer;
+        return changed;
+    }
+
+    /**
+     * Returns the height of the line for the average of a number of
+     * consecutive bins.  Bins past the end of the spectrum count as 0.
+     */
+    private int line(double[] spectrum, int start, int factor) {
+        double d = 0.0;
+        for (int i = start, end = Math.min(start + factor, spectrum.length); i < end; i++) {
+            d += spectrum[i];
+        }
+        return Math.min((int)(d / factor * SCALE), height);
+    }
+}
@@ -0,0 +1,91 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+
+public class DisplaySpectrumTest extends TestCase {
+
+    public DisplaySpectrumTest() {
+    }
+
+    public DisplaySpectrumTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Test of reduce method, of class net.sharedmemory.tuner.DisplaySpectrum.
+     */
+    public void testreduce() {
+        System.out.println("reduce");
+        DisplaySpectrum instance = new DisplaySpectrum(94, 100);
+        assertNull(instance.acquire());
+        instance.release();
+
+        // 10 bins to a column from MIN_HZ, scaled by 40 and cut off at
+        // the height.
+        double[] spectrum = new double[1024];
+        spectrum[440] = 1.0;
+        spectrum[600] = 100.0;
+        instance.reduce(spectrum, false);
+        int[] columns = instance.acquire();
+        assertEquals(94, columns.length);
+        assertEquals(4, columns[39]);
+        assertEquals(100, columns[55]);
+        assertEquals(0, columns[40]);
+        instance.release();
+
+        // Bins past the end of a short spectrum count as 0.
+        instance.reduce(new double[100], false);
+
+        // A spectrum in pitch is spread across the columns.
+        double[] pitch = new double[47];
+        pitch[46] = 1.0;
+        instance.reduce(pitch, true);
+        columns = instance.acquire();
+        assertEquals(40, columns[93]);
+        assertEquals(0, columns[0]);
+        instance.release();
+    }
+
+    /**
+     * Test of acquire method, of class net.sharedmemory.tuner.DisplaySpectrum.
+     * What is being painted is never overwritten.
+     */
+    public void testacquire() {
+        System.out.println("acquire");
+        DisplaySpectrum instance = new DisplaySpectrum(94, 100);
+        double[] spectrum = new double[1024];
+        instance.reduce(spectrum, false);
+        int[] painting = instance.acquire();
+
+        // One more can be published while painting, but then the next is
+        // skipped rather than written over the one being painted.
+        spectrum[50] = 1.0;
+        instance.reduce(spectrum, false);
+        spectrum[50] = 2.0;
+        instance.reduce(spectrum, false);
+        assertEquals(1, instance.getSkipped());
+        assertEquals(0, painting[0]);
+        instance.release();
+
+        int[] columns = instance.acquire();
+        assertTrue(columns != painting);
+        assertEquals(4, columns[0]);
+        instance.release();
+        instance.reduce(spectrum, false);
+        assertEquals(8, instance.acquire()[0]);
+        instance.release();
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new DisplaySpectrumTest("testreduce", new TestMethod(){ public void run(TestCase tc) {((DisplaySpectrumTest) tc).testreduce();}}));
+        suite.addTest(new DisplaySpectrumTest("testacquire", new TestMethod(){ public void run(TestCase tc) {((DisplaySpectrumTest) tc).testacquire();}}));
+        return suite;
+    }
+}
@@ -20,7 +20,9 @@ package net.sharedmemory.tuner;
 
 public class FFT {
     private int bits;
-    private int [] bitreverse = new int[MAXFFTSIZE];
+    private int [] bitreverse;
+    private double [] cosTable;   // cos(2 * PI * i / n) for i < n / 2
+    private double [] sinTable;   // sin(2 * PI * i / n) for i < n / 2
     private static final double TWOPI = 2.0 * Math.PI;
 
     // Limits on the number of bits this algorithm can utilize
@@ -29,7 +31,9 @@ public class FFT {
 
     /**
      * FFT class constructor
-     * Initializes code for doing a fast Fourier transform
+     * Initializes code for doing a fast Fourier transform.
+     * The bit reversal and twiddle factor tables are built here, once per
+     * transform size, so doFFT never has to call Math.sin or Math.cos.
      *
      * @param int bits is a power of two such that 2^b is the number
      * of samples.
@@ -41,7 +45,10 @@ public class FFT {
         if (bits > LOG2_MAXFFTSIZE) {
             throw new IllegalArgumentException("" + bits + " is too big");
         }
-        for (int i = (1 << bits) - 1; i >= 0; --i) {
+
+        int n = 1 << bits;
+        bitreverse = new int[n];
+        for (int i = n - 1; i >= 0; --i) {
             int k = 0;
             for (int j = 0; j < bits; ++j) {
                 k *= 2;
@@ -50,6 +57,15 @@ public class FFT {
             }
             bitreverse[i] = k;
         }
+
+        // The butterflies only ever use angles below PI.
+        cosTable = new double[n / 2];
+        sinTable = new double[n / 2];
+        for (int i = 0; i < n / 2; i++) {
+            double ang = TWOPI * i / n;
+            cosTable[i] = Math.cos(ang);
+            sinTable[i] = Math.sin(ang);
+        }
     }
 
     /**
@@ -62,23 +78,218 @@ public class FFT {
      * applied. false for a forward transform.
      */
     public void doFFT(double [] xr, double [] xi, boolean invFlag) {
+        int n = 1 << bits;
+
+        transform(xr, xi, 0, invFlag);
+
+        // Finally, multiply each value by 1/n, if this is the forward
+        // transform.
+        if (!invFlag) {
+            double f = 1.0 / n;
+
+            for (int i = 0; i < n ; i++) {
+                xr[i] *= f;
+                xi[i] *= f;
+            }
+        }
+    }
+
+    /**
+     * A fast Fourier transform of a purely real signal.
+     * The n real samples must first be packed into n/2 complex values
+     * by populateRealArrays.  A half size complex transform is done and
+     * then unpacked into bins 0 to n/2 - 1 of the full transform, scaled by
+     * 1/n as for doFFT.  The Nyquist bin is discarded.
+     *
+     * @param xr the even samples in, the real parts of the bins out.
+     * @param xi the odd samples in, the imaginary parts of the bins out.
+     */
+    public void doRealFFT(double[] xr, double[] xi) {
+        int n = 1 << bits;
+        int m = n / 2;
+        double f = 0.5 / n;
+
+        transform(xr, xi, 1, false);
+
+        // Bin 0 is purely real.
+        xr[0] = (xr[0] + xi[0]) / n;
+        xi[0] = 0.0;
+
+        // Each pair of bins k and m - k of the half size transform gives
+        // bins k and m - k of the real transform.
+        for (int k = 1, j = m - 1; k <= j; k++, j--) {
+            double er = xr[k] + xr[j];      // Twice the even part.
+            double ei = xi[k] - xi[j];
+            double or = xi[k] + xi[j];      // Twice the odd part.
+            double oi = xr[j] - xr[k];
+            double c = cosTable[k];
+            double s = sinTable[k];
+            double tr = or * c + oi * s;    // Odd part times the twiddle.
+            double ti = oi * c - or * s;
+
+            xr[k] = (er + tr) * f;
+            xi[k] = (ei + ti) * f;
+            if (j != k) {
+                xr[j] = (er - tr) * f;
+                xi[j] = (ti - ei) * f;
+            }
+        }
+    }
+
+    /**
+     * Transforms several frames of the same size in one call.  The frames
+     * are interleaved, element j of frame f being at j * frames + f, so
+     * each twiddle factor and bit reversal is looked up once for all of
+     * them and each butterfly runs across the frames together.
+     *
+     * @param xr the real parts of the frames, interleaved.
+     * @param xi the imaginary parts of the frames, interleaved.
+     * @param frames the number of frames.
+     * @param invFlag true for an inverse transform, false for a forward
+     * transform scaled by 1/n as doFFT is.
+     */
+    public void doBatchFFT(double[] xr, double[] xi, int frames, boolean invFlag) {
+        int n = 1 << bits;
+
+        transformBatch(xr, xi, frames, 0, invFlag);
+
+        if (!invFlag) {
+            double f = 1.0 / n;
+
+            for (int i = 0; i < n * frames; i++) {
+                xr[i] *= f;
+                xi[i] *= f;
+            }
+        }
+    }
+
+    /**
+     * Transforms several frames of real samples in one call, as doRealFFT
+     * does for one.  The frames are packed by populateBatchArrays.
+     *
+     * @param xr the even samples in, the real parts of the bins out.
+     * @param xi the odd samples in, the imaginary parts of the bins out.
+     * @param frames the number of frames.
+     */
+    public void doRealBatchFFT(double[] xr, double[] xi, int frames) {
+        int n = 1 << bits;
+        int m = n / 2;
+        double f = 0.5 / n;
+
+        transformBatch(xr, xi, frames, 1, false);
+
+        // Bin 0 is purely real.
+        for (int b = 0; b < frames; b++) {
+            xr[b] = (xr[b] + xi[b]) / n;
+            xi[b] = 0.0;
+        }
+
+        // Unpack as doRealFFT does, with each twiddle used for every frame.
+        for (int k = 1, j = m - 1; k <= j; k++, j--) {
+            double c = cosTable[k];
+            double s = sinTable[k];
+            int kb = k * frames;
+            int jb = j * frames;
+            for (int b = 0; b < frames; b++, kb++, jb++) {
+                double er = xr[kb] + xr[jb];
+                double ei = xi[kb] - xi[jb];
+                double or = xi[kb] + xi[jb];
+                double oi = xr[jb] - xr[kb];
+                double tr = or * c + oi * s;
+                double ti = oi * c - or * s;
+
+                xr[kb] = (er + tr) * f;
+                xi[kb] = (ei + ti) * f;
+                if (j != k) {
+                    xr[jb] = (er - tr) * f;
+                    xi[jb] = (ti - ei) * f;
+                }
+            }
+        }
+    }
+
+    /**
+     * The unscaled transform shared by doBatchFFT and doRealBatchFFT, as
+     * transform is for a single frame.
+     *
+     * @param xr the real parts, interleaved.
+     * @param xi the imaginary parts, interleaved.
+     * @param frames the number of frames.
+     * @param shift log2 of how much smaller than 2^bits the transform is.
+     * @param invFlag true for an inverse transform.
+     */
+    private void transformBatch(double[] xr, double[] xi, int frames, int shift, boolean invFlag) {
+        int n = 1 << (bits - shift);
+        int n2 = n / 2;
+
+        for (int l = 0; l < bits - shift; ++l) {
+            int step = n2 * frames;     // From a butterfly's top to its bottom.
+            for (int k = 0; k < n; k += n2) {
+                int p = bitreverse[k / n2];
+                double c = cosTable[p];
+                double s = invFlag ? -sinTable[p] : sinTable[p];
+
+                // The butterflies of a group are next to each other in
+                // every frame, so the group is one run of the arrays.
+                int end = (k + n2) * frames;
+                for (int a = k * frames; a < end; a++) {
+                    int b = a + step;
+                    double tr = xr[b] * c + xi[b] * s;
+                    double ti = xi[b] * c - xr[b] * s;
+
+                    xr[b] = xr[a] - tr;
+                    xi[b] = xi[a] - ti;
+                    xr[a] += tr;
+                    xi[a] += ti;
+                }
+                k += n2;
+            }
+            n2 /= 2;
+        }
+
+        for (int k = 0; k < n; k++) {
+            int i = bitreverse[k] >> shift;
+            if (i <= k) {
+                continue;
+            }
+            for (int a = k * frames, b = i * frames, end = a + frames; a < end; a++, b++) {
+                double tr = xr[a];
+                double ti = xi[a];
+                xr[a] = xr[b];
+                xi[a] = xi[b];
+                xr[b] = tr;
+                xi[b] = ti;
+            }
+        }
+    }
+
+    /**
+     * The unscaled transform shared by doFFT and doRealFFT.
+     * The tables are built for the full size but also serve a
+     * transform 2^shift times smaller.
+     *
+     * @param xr the real parts.
+     * @param xi the imaginary parts.
+     * @param shift log2 of how much smaller than 2^bits the transform is.
+     * @param invFlag true for an inverse transform.
+     */
+    private void transform(double [] xr, double [] xi, int shift, boolean invFlag) {
         int n, n2, i, k, kn2, l, p;
-        double ang, s, c, tr, ti;
+        double s, c, tr, ti;
 
-        n2 = (n = (1 << bits)) / 2;
+        n2 = (n = (1 << (bits - shift))) / 2;
 
-        for (l = 0; l < bits; ++l) {
+        for (l = 0; l < bits - shift; ++l) {
             for (k = 0; k < n; k += n2) {
+                // The twiddle factor is the same for every butterfly
+                // in this group so look it up once.
+                p = bitreverse[k / n2];
+                c = cosTable[p];
+                s = invFlag ? -sinTable[p] : sinTable[p];
+
                 for (i = 0; i < n2; ++i, ++k) {
-                    p = bitreverse[k / n2];
-                    ang = TWOPI * p / n;
-                    c = Math.cos(ang);
-                    s = Math.sin(ang);
                     kn2 = k + n2;
 
-                    if (invFlag)
-                        s = -s;
-
                     tr = xr[kn2] * c + xi[kn2] * s;
                     ti = xi[kn2] * c - xr[kn2] * s;
 
@@ -92,7 +303,7 @@ public class FFT {
         }
 
         for (k = 0; k < n; k++) {
-            if ((i = bitreverse[k]) <= k)
+            if ((i = bitreverse[k] >> shift) <= k)
                 continue;
 
             tr = xr[k];
@@ -102,17 +313,6 @@ public class FFT {
             xr[i] = tr;
             xi[i] = ti;
         }
-
-        // Finally, multiply each value by 1/n, if this is the forward
-        // transform.
-        if (!invFlag) {
-            double f = 1.0 / n;
-
-            for (i = 0; i < n ; i++) {
-                xr[i] *= f;
-                xi[i] *= f;
-            }
-        }
     }
 
     /**
@@ -128,11 +328,66 @@ public class FFT {
      */
     public double[] createSpectrum(double [] xr, double [] xi) {
         // Only need to scan from 0 > xr.length / 2 (Nyquist frequency).
-        double[] spectrum = new double[xr.length / 2];
+        return createSpectrum(xr, xi, xr.length / 2);
+    }
+
+    /**
+     * Creates a frequency spectrum from the first bins of the FFT output.
+     * Use this after doRealFFT, where every element of xr and xi is a bin
+     * below the Nyquist frequency.
+     *
+     * @param xr array of real parts.
+     * @param xi array of imaginary parts.
+     * @param bins the number of bins to convert.
+     * @return array containing magnitudes of each FFT bin.
+     */
+    public double[] createSpectrum(double [] xr, double [] xi, int bins) {
+        double[] spectrum = new double[bins];
+        createSpectrum(xr, xi, spectrum);
+        return spectrum;
+    }
+
+    /**
+     * Creates a frequency spectrum in an existing array, so nothing is
+     * allocated.  One bin is converted for each element of spectrum.
+     *
+     * @param xr array of real parts.
+     * @param xi array of imaginary parts.
+     * @param spectrum the array to hold the magnitudes of each FFT bin.
+     */
+    public void createSpectrum(double [] xr, double [] xi, double[] spectrum) {
         for (int i = 0; i < spectrum.length; i++) {
             spectrum[i] = Math.sqrt((xr[i] * xr[i]) + (xi[i] * xi[i]));
         }
-        return spectrum;
+    }
+
+    /**
+     * Creates a power spectrum, the squared magnitudes, in an existing
+     * array.  Finding the peak doesn't need the square roots.
+     *
+     * @param xr array of real parts.
+     * @param xi array of imaginary parts.
+     * @param power the array to hold the power of each FFT bin.
+     */
+    public void createPowerSpectrum(double [] xr, double [] xi, double[] power) {
+        for (int i = 0; i < power.length; i++) {
+            power[i] = (xr[i] * xr[i]) + (xi[i] * xi[i]);
+        }
+    }
+
+    /**
+     * Creates the power spectrum of one frame of a batch.
+     *
+     * @param xr array of real parts of every frame.
+     * @param xi array of imaginary parts of every frame.
+     * @param frame which frame of the batch to take.
+     * @param frames the number of frames in the batch.
+     * @param power the array to hold the power of each FFT bin.
+     */
+    public void createPowerSpectrum(double [] xr, double [] xi, int frame, int frames, double[] power) {
+        for (int i = 0, j = frame; i < power.length; i++, j += frames) {
+            power[i] = (xr[j] * xr[j]) + (xi[j] * xi[j]);
+        }
     }
 
     /**
@@ -145,10 +400,71 @@ public class FFT {
      *
      * @author David Keen
      */
-    public double indexToFrequency(int sampleRate, int numSamples, int index) {
+    public static double indexToFrequency(int sampleRate, int numSamples, int index) {
         return (double)index * (double)sampleRate / (double)numSamples;
     }
 
+    /**
+     * Converts an interpolated FFT array index to a frequency.
+     *
+     * @param sampleRate the sample rate in Hz.
+     * @param numSamples the number of samples in the FFT.
+     * @param index the index, which may lie between bins.
+     * @return the frequency in Hz.
+     */
+    public static double indexToFrequency(int sampleRate, int numSamples, double index) {
+        return index * sampleRate / numSamples;
+    }
+
+    /**
+     * Finds where a peak in a spectrum really lies between the bins.
+     *
+     * @param spectrum the magnitude spectrum.
+     * @param index the index of a peak.
+     * @return the interpolated index, within half a bin of the peak.
+     */
+    public static double interpolatePeak(double[] spectrum, int index) {
+        if (index < 1 || index >= spectrum.length - 1) {
+            return index;
+        }
+        return index + interpolatePeak(spectrum[index - 1], spectrum[index], spectrum[index + 1]);
+    }
+
+    /**
+     * Finds where a peak really lies from the magnitudes of its bin and
+     * the bins either side.  A Gaussian is fitted through them, which is a
+     * parabola through their logarithms.  It is close to exact for a Hann
+     * windowed spectrum.  If a neighbour is zero a parabola is fitted
+     * through the magnitudes instead.
+     *
+     * @param below the magnitude of the bin below the peak.
+     * @param peak the magnitude of the peak bin.
+     * @param above the magnitude of the bin above the peak.
+     * @return how far the peak is from the peak bin, between -0.5 and 0.5.
+     */
+    public static double interpolatePeak(double below, double peak, double above) {
+        if (peak < below || peak < above) {
+            // Not a peak.
+            return 0.0;
+        }
+        if (below > 0.0 && above > 0.0) {
+            below = MathUtils.log(below);
+            peak = MathUtils.log(peak);
+            above = MathUtils.log(above);
+        }
+        double denominator = below - 2.0 * peak + above;
+        if (denominator >= 0.0) {
+            return 0.0;
+        }
+        double delta = 0.5 * (below - above) / denominator;
+        if (delta > 0.5) {
+            return 0.5;
+        } else if (delta < -0.5) {
+            return -0.5;
+        }
+        return delta;
+    }
+
     /**
      * Loads the given arrays with the sample data.  The arrays are a
      * parallel array representation of complex numbers.
@@ -165,6 +481,54 @@ public class FFT {
         }
     }
 
+    /**
+     * Loads the given arrays with the sample data for doRealFFT.  The even
+     * samples go in the real parts and the odd samples in the imaginary
+     * parts, so each array only needs to be half the length of the samples.
+     *
+     * @param xr the array to hold the even samples.
+     * @param xi the array to hold the odd samples.
+     * @param samples the raw samples.
+     */
+    public void populateRealArrays(double[] xr, double[] xi, byte[] samples) {
+        for (int i = 0, j = 0; i < xr.length; i++, j += 2) {
+            xr[i] = samples[j];
+            xi[i] = samples[j + 1];
+        }
+    }
+
+    /**
+     * Loads one frame of a batch for doRealBatchFFT, as populateRealArrays
+     * does for doRealFFT.
+     *
+     * @param xr the array to hold the even samples of every frame.
+     * @param xi the array to hold the odd samples of every frame.
+     * @param samples the raw samples of this frame.
+     * @param frame which frame of the batch this is.
+     * @param frames the number of frames in the batch.
+     */
+    public void populateBatchArrays(double[] xr, double[] xi, byte[] samples, int frame, int frames) {
+        for (int i = frame, j = 0; j < samples.length; i += frames, j += 2) {
+            xr[i] = samples[j];
+            xi[i] = samples[j + 1];
+        }
+    }
+
+    /**
+     * Loads the given arrays with filtered sample data for doRealFFT, as
+     * populateRealArrays does for raw samples.
+     *
+     * @param xr the array to hold the even samples.
+     * @param xi the array to hold the odd samples.
+     * @param samples the samples, twice the length of the arrays.
+     */
+    public void populateRealArrays(double[] xr, double[] xi, double[] samples) {
+        for (int i = 0, j = 0; i < xr.length; i++, j += 2) {
+            xr[i] = samples[j];
+            xi[i] = samples[j + 1];
+        }
+    }
+
     /**
      * Downsamples a spectrum.
      *
@@ -175,22 +539,37 @@ public class FFT {
      * @author David Keen
      */
     public double[] downSample(double[] spectrum, int factor) {
-        int downsampleLength = spectrum.length / factor;
         double[] d = new double[spectrum.length];
+        downSample(spectrum, factor, d);
+        return d;
+    }
+
+    /**
+     * Downsamples a spectrum into an existing array, so nothing is allocated.
+     *
+     * @param spectrum original spectrum array to downsample.
+     * @param factor the downsampling factor.
+     * @param d the array to hold the downsampled spectrum.  It must be
+     * the same length as spectrum.
+     *
+     * @author David Keen
+     */
+    public void downSample(double[] spectrum, int factor, double[] d) {
+        int downsampleLength = spectrum.length / factor;
 
         // Load the new array with the average of factor consecutive samples
         // of the original.  Remainder should be set to 1.
         for (int i = 0; i < spectrum.length; i ++) {
             if (i < downsampleLength) {
+                double sum = 0.0;
                 for (int j = 0; j < factor; j++) {      // Add the consecutive samples
-                    d[i] += spectrum[(i * factor) + j];
+                    sum += spectrum[(i * factor) + j];
                 }
-                d[i] = d[i] / factor;                   // and average them.
+                d[i] = sum / factor;                    // and average them.
             } else {
                 d[i] = 1;
             }
         }
-        return d;
     }
 
     /**
@@ -209,17 +588,15 @@ public class FFT {
      */
     public int HPSMax(
             double[] original, double[] times2, double[] times3, int min, int max) {
-        double[] d = new double[original.length];
-
-        // Calculate the product of the spectrums.
-        for (int i = min; i < max; i++) {
-            d[i] = original[i] * times2[i] * times3[i];
-        }
-
-        // Find the index with the highest value.
+        // Calculate the product of the spectrums and keep track of the
+        // index with the highest value as we go.  Anything outside
+        // min - max counts as zero.
         int maxIdx = 0;
-        for (int i = 0; i < original.length; i++) {
-            if (d[i] > d[maxIdx]) {
+        double maxValue = min == 0 ? original[0] * times2[0] * times3[0] : 0.0;
+        for (int i = min; i < max; i++) {
+            double d = original[i] * times2[i] * times3[i];
+            if (d > maxValue) {
+                maxValue = d;
                 maxIdx = i;
             }
         }
@@ -0,0 +1,186 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+
+public class FFTTest extends TestCase {
+
+    private static final double EPSILON = 1e-9;
+
+    public FFTTest() {
+    }
+
+    public FFTTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Test of doFFT method, of class net.sharedmemory.tuner.FFT.
+     * The table driven transform is checked against a direct DFT.
+     */
+    public void testdoFFT() {
+        System.out.println("doFFT");
+        int bits = 6;
+        int n = 1 << bits;
+        FFT instance = new FFT(bits);
+
+        double[] xr = new double[n];
+        double[] xi = new double[n];
+        for (int i = 0; i < n; i++) {
+            xr[i] = Math.sin(2.0 * Math.PI * 5 * i / n) + 0.5 * Math.cos(2.0 * Math.PI * 12 * i / n) + (i % 7);
+            xi[i] = 0.25 * (i % 3);
+        }
+        double[] er = new double[n];
+        double[] ei = new double[n];
+        dft(xr, xi, er, ei);
+
+        instance.doFFT(xr, xi, false);
+        for (int i = 0; i < n; i++) {
+            assertTrue("real part of bin " + i, Math.abs(xr[i] - er[i]) < EPSILON);
+            assertTrue("imaginary part of bin " + i, Math.abs(xi[i] - ei[i]) < EPSILON);
+        }
+    }
+
+    /**
+     * An inverse transform should undo a forward transform.
+     */
+    public void testInverse() {
+        System.out.println("inverse doFFT");
+        int bits = 8;
+        int n = 1 << bits;
+        FFT instance = new FFT(bits);
+
+        double[] xr = new double[n];
+        double[] xi = new double[n];
+        for (int i = 0; i < n; i++) {
+            xr[i] = (i * 37) % 101 - 50;
+        }
+        instance.doFFT(xr, xi, false);
+        instance.doFFT(xr, xi, true);
+        for (int i = 0; i < n; i++) {
+            assertTrue("sample " + i, Math.abs(xr[i] - ((i * 37) % 101 - 50)) < 1e-6);
+            assertTrue("sample " + i, Math.abs(xi[i]) < 1e-6);
+        }
+    }
+
+    /**
+     * Test of doRealFFT method, of class net.sharedmemory.tuner.FFT.
+     * The bins below Nyquist must match the full complex transform.
+     */
+    public void testdoRealFFT() {
+        System.out.println("doRealFFT");
+        int bits = 9;
+        int n = 1 << bits;
+        FFT instance = new FFT(bits);
+
+        byte[] samples = new byte[n];
+        for (int i = 0; i < n; i++) {
+            samples[i] = (byte)(100.0 * Math.sin(2.0 * Math.PI * 17.3 * i / n) + (i % 11) - 5);
+        }
+        double[] xr = new double[n];
+        double[] xi = new double[n];
+        instance.populateArrays(xr, xi, samples);
+        instance.doFFT(xr, xi, false);
+
+        double[] rr = new double[n / 2];
+        double[] ri = new double[n / 2];
+        instance.populateRealArrays(rr, ri, samples);
+        instance.doRealFFT(rr, ri);
+        for (int i = 0; i < n / 2; i++) {
+            assertTrue("real part of bin " + i, Math.abs(rr[i] - xr[i]) < EPSILON);
+            assertTrue("imaginary part of bin " + i, Math.abs(ri[i] - xi[i]) < EPSILON);
+        }
+    }
+
+    /**
+     * Test of doBatchFFT and doRealBatchFFT methods, of class
+     * net.sharedmemory.tuner.FFT.  Each frame must come out as it would
+     * on its own.
+     */
+    public void testdoBatchFFT() {
+        System.out.println("doBatchFFT");
+        int bits = 8;
+        int n = 1 << bits;
+        int frames = 3;
+        FFT instance = new FFT(bits);
+
+        byte[][] samples = new byte[frames][n];
+        for (int f = 0; f < frames; f++) {
+            for (int i = 0; i < n; i++) {
+                samples[f][i] = (byte)(100.0 * Math.sin(2.0 * Math.PI * (5.7 + 9.1 * f) * i / n) + (i % (7 + f)) - 4);
+            }
+        }
+
+        double[] br = new double[n * frames];
+        double[] bi = new double[n * frames];
+        double[] rr = new double[n / 2 * frames];
+        double[] ri = new double[n / 2 * frames];
+        for (int f = 0; f < frames; f++) {
+            for (int i = 0; i < n; i++) {
+                br[i * frames + f] = samples[f][i];
+            }
+            instance.populateBatchArrays(rr, ri, samples[f], f, frames);
+        }
+        instance.doBatchFFT(br, bi, frames, false);
+        instance.doRealBatchFFT(rr, ri, frames);
+
+        double[] xr = new double[n];
+        double[] xi = new double[n];
+        double[] power = new double[n / 2];
+        for (int f = 0; f < frames; f++) {
+            instance.populateArrays(xr, xi, samples[f]);
+            instance.doFFT(xr, xi, false);
+            instance.createPowerSpectrum(rr, ri, f, frames, power);
+            for (int i = 0; i < n; i++) {
+                assertTrue("frame " + f + " bin " + i, Math.abs(br[i * frames + f] - xr[i]) < EPSILON
+                        && Math.abs(bi[i * frames + f] - xi[i]) < EPSILON);
+            }
+            for (int i = 0; i < n / 2; i++) {
+                assertTrue("real frame " + f + " bin " + i, Math.abs(rr[i * frames + f] - xr[i]) < EPSILON
+                        && Math.abs(ri[i * frames + f] - xi[i]) < EPSILON);
+                assertTrue("power frame " + f + " bin " + i,
+                        Math.abs(power[i] - (xr[i] * xr[i] + xi[i] * xi[i])) < EPSILON);
+            }
+        }
+
+        // And back again.
+        instance.doBatchFFT(br, bi, frames, true);
+        for (int f = 0; f < frames; f++) {
+            for (int i = 0; i < n; i++) {
+                assertTrue("inverse frame " + f + " sample " + i, Math.abs(br[i * frames + f] - samples[f][i]) < EPSILON);
+            }
+        }
+    }
+
+    /**
+     * A direct DFT with the same 1/n scaling as the forward doFFT.
+     */
+    private void dft(double[] xr, double[] xi, double[] er, double[] ei) {
+        int n = xr.length;
+        for (int k = 0; k < n; k++) {
+            double re = 0.0;
+            double im = 0.0;
+            for (int t = 0; t < n; t++) {
+                double ang = 2.0 * Math.PI * t * k / n;
+                re += xr[t] * Math.cos(ang) + xi[t] * Math.sin(ang);
+                im += xi[t] * Math.cos(ang) - xr[t] * Math.sin(ang);
+            }
+            er[k] = re / n;
+            ei[k] = im / n;
+        }
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new FFTTest("testdoFFT", new TestMethod(){ public void run(TestCase tc) {((FFTTest) tc).testdoFFT();}}));
+        suite.addTest(new FFTTest("testInverse", new TestMethod(){ public void run(TestCase tc) {((FFTTest) tc).testInverse();}}));
+        suite.addTest(new FFTTest("testdoRealFFT", new TestMethod(){ public void run(TestCase tc) {((FFTTest) tc).testdoRealFFT();}}));
+        suite.addTest(new FFTTest("testdoBatchFFT", new TestMethod(){ public void run(TestCase tc) {((FFTTest) tc).testdoBatchFFT();}}));
+        return suite;
+    }
+}
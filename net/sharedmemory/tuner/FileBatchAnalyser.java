@@ -0,0 +1,71 @@
+/*
+ * FileBatchAnalyser.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+import java.io.*;
+import java.util.Enumeration;
+import java.util.Vector;
+import javax.microedition.io.Connector;
+import javax.microedition.io.file.FileConnection;
+
+/**
+ * Analyses a directory of recordings read with the FileConnection API,
+ * such as the takes saved on a memory card.
+ *
+ * @author David Keen
+ */
+public class FileBatchAnalyser extends BatchAnalyser {
+    private String directory;
+
+    /**
+     * Creates a new instance of FileBatchAnalyser
+     *
+     * @param directory the URL of the directory, eg file:///root1/takes/
+     * @param threads the number of worker threads.
+     * @param power there are 2 raised to this power bytes in each frame.
+     */
+    public FileBatchAnalyser(String directory, int threads, int power) {
+        super(threads, power);
+        this.directory = directory;
+    }
+
+    /**
+     * Analyses a directory and prints the timelines and a report.
+     *
+     * @param args the directory URL, then optionally the number of threads
+     * and the power of the frame length in bytes.
+     */
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int power = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+        BatchAnalyser analyser = new FileBatchAnalyser(args[0], threads, power);
+
+        Timeline[] timelines = analyser.run();
+        for (int i = 0; i < timelines.length; i++) {
+            System.out.println(timelines[i]);
+        }
+        System.out.println(analyser.getReport());
+    }
+
+    protected String[] list() throws IOException {
+        FileConnection fc = (FileConnection)Connector.open(directory, Connector.READ);
+        try {
+            Vector v = new Vector();
+            for (Enumeration e = fc.list(); e.hasMoreElements();) {
+                v.addElement(e.nextElement());
+            }
+            String[] names = new String[v.size()];
+            v.copyInto(names);
+            return names;
+        } finally {
+            fc.close();
+        }
+    }
+
+    protected InputStream open(String name) throws IOException {
+        return Connector.openInputStream(directory + name);
+    }
+}
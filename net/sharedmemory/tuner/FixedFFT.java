@@ -0,0 +1,337 @@
+/*
+ * FixedFFT.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * A fast Fourier transform in integer arithmetic, for phones without a
+ * floating point unit.  It is the same algorithm as FFT with the
+ * twiddle factors in Q15 fixed point.
+ * <p>
+ * Block floating point keeps the precision up without overflowing: before
+ * each stage the whole block is shifted right just enough to leave
+ * headroom for the butterflies, and the shifts are counted in a block
+ * exponent.  The result times 2^exponent is the unscaled transform of the
+ * input.
+ *
+ * @author David Keen
+ */
+public class FixedFFT {
+
+    // Bits of fraction in the twiddle factors.
+    private static final int Q = 15;
+    private static final int ONE = 1 << Q;
+    private static final int ROUND = 1 << (Q - 1);
+
+    // The block is kept below this before each stage.  A butterfly can
+    // grow a value by 1 + sqrt(2), and a value times a twiddle factor
+    // must fit in an int.
+    private static final int HEADROOM = 1 << 14;
+
+    // Samples are shifted up by this many bits on the way in, so a quiet
+    // one keeps its precision.  A loud 16 bit sample is shifted back down
+    // to the headroom before the first stage.
+    public static final int INPUT_SHIFT = 6;
+
+    private int bits;
+    private int[] bitreverse;
+    private int[] cosTable;     // cos(2 * PI * i / n) in Q15 for i < n / 2
+    private int[] sinTable;     // sin(2 * PI * i / n) in Q15 for i < n / 2
+
+    /**
+     * Creates a new instance of FixedFFT.
+     *
+     * @param bits the transform has 2^bits points.
+     */
+    public FixedFFT(int bits) {
+        this.bits = bits;
+
+        int n = 1 << bits;
+        bitreverse = new int[n];
+        for (int i = n - 1; i >= 0; --i) {
+            int k = 0;
+            for (int j = 0; j < bits; ++j) {
+                k *= 2;
+                if ((i & (1 << j)) != 0)
+                    k++;
+            }
+            bitreverse[i] = k;
+        }
+
+        cosTable = new int[n / 2];
+        sinTable = new int[n / 2];
+        for (int i = 0; i < n / 2; i++) {
+            double ang = 2.0 * Math.PI * i / n;
+            cosTable[i] = (int)Math.floor(Math.cos(ang) * ONE + 0.5);
+            sinTable[i] = (int)Math.floor(Math.sin(ang) * ONE + 0.5);
+        }
+    }
+
+    /**
+     * A forward fast Fourier transform.  Unlike FFT.doFFT the result isn't
+     * divided by n; the returned exponent says how it is scaled.
+     *
+     * @param xr the real parts of the data to be transformed.
+     * @param xi the imaginary parts of the data to be transformed.
+     * @return the block exponent.
+     */
+    public int doFFT(int[] xr, int[] xi) {
+        return transform(xr, xi, 0);
+    }
+
+    /**
+     * A forward fast Fourier transform of a purely real signal, packed as
+     * for FFT.doRealFFT.  A half size transform is done and unpacked into
+     * bins 0 to n/2 - 1.  The Nyquist bin is discarded.
+     *
+     * @param xr the even samples in, the real parts of the bins out.
+     * @param xi the odd samples in, the imaginary parts of the bins out.
+     * @return the block exponent.
+     */
+    public int doRealFFT(int[] xr, int[] xi) {
+        int m = 1 << (bits - 1);
+
+        int exponent = transform(xr, xi, 1);
+        exponent += normalise(xr, xi, m);
+
+        // Bin 0 is purely real.
+        int x0 = xr[0] + xi[0];
+
+        // Each pair of bins k and m - k of the half size transform gives
+        // bins k and m - k of the real transform, times two.
+        for (int k = 1, j = m - 1; k <= j; k++, j--) {
+            int er = xr[k] + xr[j];
+            int ei = xi[k] - xi[j];
+            int or = xi[k] + xi[j];
+            int oi = xr[j] - xr[k];
+            int c = cosTable[k];
+            int s = sinTable[k];
+            int tr = (or * c + oi * s + ROUND) >> Q;
+            int ti = (oi * c - or * s + ROUND) >> Q;
+
+            xr[k] = (er + tr) >> 1;
+            xi[k] = (ei + ti) >> 1;
+            if (j != k) {
+                xr[j] = (er - tr) >> 1;
+                xi[j] = (ti - ei) >> 1;
+            }
+        }
+        xr[0] = x0;
+        xi[0] = 0;
+        return exponent;
+    }
+
+    /**
+     * The transform shared by doFFT and doRealFFT.
+     *
+     * @param xr the real parts.
+     * @param xi the imaginary parts.
+     * @param shift log2 of how much smaller than 2^bits the transform is.
+     * @return the block exponent.
+     */
+    private int transform(int[] xr, int[] xi, int shift) {
+        int n, n2, i, k, kn2, l, p;
+        int s, c, tr, ti;
+        int exponent = 0;
+
+        n2 = (n = (1 << (bits - shift))) / 2;
+
+        for (l = 0; l < bits - shift; ++l) {
+            exponent += normalise(xr, xi, n);
+
+            for (k = 0; k < n; k += n2) {
+                p = bitreverse[k / n2];
+                c = cosTable[p];
+                s = sinTable[p];
+
+                for (i = 0; i < n2; ++i, ++k) {
+                    kn2 = k + n2;
+
+                    tr = (xr[kn2] * c + xi[kn2] * s + ROUND) >> Q;
+                    ti = (xi[kn2] * c - xr[kn2] * s + ROUND) >> Q;
+
+                    xr[kn2] = xr[k] - tr;
+                    xi[kn2] = xi[k] - ti;
+                    xr[k] += tr;
+                    xi[k] += ti;
+                }
+            }
+            n2 /= 2;
+        }
+
+        for (k = 0; k < n; k++) {
+            if ((i = bitreverse[k] >> shift) <= k)
+                continue;
+
+            tr = xr[k];
+            ti = xi[k];
+            xr[k] = xr[i];
+            xi[k] = xi[i];
+            xr[i] = tr;
+            xi[i] = ti;
+        }
+        return exponent;
+    }
+
+    /**
+     * Shifts the block right until every value is below the headroom.
+     *
+     * @param xr the real parts.
+     * @param xi the imaginary parts.
+     * @param n how many of each there are.
+     * @return how many bits it was shifted by.
+     */
+    private static int normalise(int[] xr, int[] xi, int n) {
+        int shift = headroomShift(magnitudes(xr, xi, n));
+        if (shift > 0) {
+            for (int i = 0; i < n; i++) {
+                xr[i] >>= shift;
+                xi[i] >>= shift;
+            }
+        }
+        return shift;
+    }
+
+    /**
+     * Returns the bits set in any of the magnitudes, which is enough to
+     * tell how far they are below a power of two.  One's complement is
+     * near enough for the magnitude.
+     */
+    private static int magnitudes(int[] xr, int[] xi, int n) {
+        int bitsSet = 0;
+        for (int i = 0; i < n; i++) {
+            bitsSet |= (xr[i] ^ (xr[i] >> 31)) | (xi[i] ^ (xi[i] >> 31));
+        }
+        return bitsSet;
+    }
+
+    /**
+     * Returns how far values with these bits set must be shifted right to
+     * be below the headroom.
+     */
+    private static int headroomShift(int bitsSet) {
+        int shift = 0;
+        while ((bitsSet >> shift) >= HEADROOM) {
+            shift++;
+        }
+        return shift;
+    }
+
+    /**
+     * Loads the given arrays with 16 bit little-endian samples for
+     * doRealFFT, scaled up by INPUT_SHIFT bits.  They are decoded here, in
+     * integer arithmetic, rather than by Pcm.decode.
+     *
+     * @param xr the array to hold the even samples.
+     * @param xi the array to hold the odd samples.
+     * @param samples the raw samples, four bytes for each element of the
+     * arrays.
+     */
+    public void populateRealArrays(int[] xr, int[] xi, byte[] samples) {
+        for (int i = 0, j = 0; i < xr.length; i++, j += 4) {
+            xr[i] = ((samples[j] & 0xff) | (samples[j + 1] << 8)) << INPUT_SHIFT;
+            xi[i] = ((samples[j + 2] & 0xff) | (samples[j + 3] << 8)) << INPUT_SHIFT;
+        }
+    }
+
+    /**
+     * Loads the given arrays with decoded or filtered sample data for
+     * doRealFFT, rounded to fixed point and scaled as for raw samples.
+     *
+     * @param xr the array to hold the even samples.
+     * @param xi the array to hold the odd samples.
+     * @param samples the samples, twice the length of the arrays.
+     */
+    public void populateRealArrays(int[] xr, int[] xi, double[] samples) {
+        double scale = 1 << INPUT_SHIFT;
+        for (int i = 0, j = 0; i < xr.length; i++, j += 2) {
+            xr[i] = (int)Math.floor(samples[j] * scale + 0.5);
+            xi[i] = (int)Math.floor(samples[j + 1] * scale + 0.5);
+        }
+    }
+
+    /**
+     * Creates a magnitude spectrum from the bins.  The magnitudes are
+     * found with an integer square root and only scaled to match
+     * FFT.createSpectrum after a doFFT at the end.
+     *
+     * @param xr array of real parts.
+     * @param xi array of imaginary parts.
+     * @param exponent the block exponent from the transform.
+     * @param spectrum the array to hold the magnitudes, one per bin.
+     */
+    public void createSpectrum(int[] xr, int[] xi, int exponent, double[] spectrum) {
+        double scale = scale(exponent);
+        for (int i = 0; i < spectrum.length; i++) {
+            long re = xr[i];
+            long im = xi[i];
+            spectrum[i] = sqrt(re * re + im * im) * scale;
+        }
+    }
+
+    /**
+     * Creates a power spectrum, the squared magnitudes, from the bins on
+     * the same scale as FFT.createPowerSpectrum.  There is no square root.
+     *
+     * @param xr array of real parts.
+     * @param xi array of imaginary parts.
+     * @param exponent the block exponent from the transform.
+     * @param power the array to hold the power of each bin.
+     */
+    public void createPowerSpectrum(int[] xr, int[] xi, int exponent, double[] power) {
+        double scale = scale(exponent);
+        scale *= scale;
+        for (int i = 0; i < power.length; i++) {
+            long re = xr[i];
+            long im = xi[i];
+            power[i] = (re * re + im * im) * scale;
+        }
+    }
+
+    /**
+     * Returns the factor that turns a bin of this transform into the same
+     * scale as FFT.doFFT gives for the unshifted samples.
+     *
+     * @param exponent the block exponent from the transform.
+     * @return the scale factor.
+     */
+    public double scale(int exponent) {
+        int e = exponent - INPUT_SHIFT - bits;
+        return (e >= 0) ? (double)(1L << e) : 1.0 / (1L << -e);
+    }
+
+    /**
+     * Returns the integer square root a bit at a time.  It is rounded
+     * down for numbers below 2^30; larger numbers are shifted down to 30
+     * bits first, which leaves the root good to about 1 part in 2^14 for
+     * half the work.
+     *
+     * @param x a number that isn't negative.
+     * @return the square root of x.
+     */
+    static int sqrt(long x) {
+        int shift = 0;
+        while ((x >> shift) >= (1L << 30)) {
+            shift += 2;
+        }
+        int v = (int)(x >> shift);
+
+        int root = 0;
+        int bit = 1 << 28;
+        while (bit > v) {
+            bit >>= 2;
+        }
+        while (bit != 0) {
+            if (v >= root + bit) {
+                v -= root + bit;
+                root = (root >> 1) + bit;
+            } else {
+                root >>= 1;
+            }
+            bit >>= 2;
+        }
+        return root << (shift / 2);
+    }
+}
@@ -0,0 +1,143 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+import java.util.Random;
+
+public class FixedFFTTest extends TestCase {
+
+    public FixedFFTTest() {
+    }
+
+    public FixedFFTTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Test of doFFT method, of class net.sharedmemory.tuner.FixedFFT.
+     * Once scaled it must match the double transform to within the
+     * rounding of the fixed point arithmetic.
+     */
+    public void testdoFFT() {
+        System.out.println("fixed doFFT");
+        int bits = 10;
+        int n = 1 << bits;
+        FixedFFT instance = new FixedFFT(bits);
+        FFT fft = new FFT(bits);
+
+        double[] samples = new double[n];
+        Pcm.decode(noisyTone(n), samples);
+        int[] ixr = new int[n];
+        int[] ixi = new int[n];
+        double[] xr = new double[n];
+        double[] xi = new double[n];
+        for (int i = 0; i < n; i++) {
+            ixr[i] = (int)samples[i] << FixedFFT.INPUT_SHIFT;
+            xr[i] = samples[i];
+        }
+
+        int exponent = instance.doFFT(ixr, ixi);
+        fft.doFFT(xr, xi, false);
+        assertSimilar(ixr, ixi, instance.scale(exponent), xr, xi, n);
+    }
+
+    /**
+     * Test of populateRealArrays, doRealFFT and createSpectrum methods, of
+     * class net.sharedmemory.tuner.FixedFFT.  The raw samples are decoded
+     * as 16 bit PCM.
+     */
+    public void testdoRealFFT() {
+        System.out.println("fixed doRealFFT");
+        int bits = 12;
+        int n = 1 << bits;
+        FixedFFT instance = new FixedFFT(bits);
+        FFT fft = new FFT(bits);
+
+        byte[] samples = noisyTone(n);
+        double[] decoded = new double[n];
+        Pcm.decode(samples, decoded);
+        int[] ixr = new int[n / 2];
+        int[] ixi = new int[n / 2];
+        double[] xr = new double[n / 2];
+        double[] xi = new double[n / 2];
+        instance.populateRealArrays(ixr, ixi, samples);
+        fft.populateRealArrays(xr, xi, decoded);
+
+        int exponent = instance.doRealFFT(ixr, ixi);
+        fft.doRealFFT(xr, xi);
+        assertSimilar(ixr, ixi, instance.scale(exponent), xr, xi, n / 2);
+
+        double[] spectrum = new double[n / 2];
+        double[] expected = new double[n / 2];
+        instance.createSpectrum(ixr, ixi, exponent, spectrum);
+        fft.createSpectrum(xr, xi, expected);
+        double peak = 0.0;
+        for (int i = 0; i < n / 2; i++) {
+            peak = Math.max(peak, expected[i]);
+        }
+        for (int i = 0; i < n / 2; i++) {
+            assertTrue("bin " + i, Math.abs(spectrum[i] - expected[i]) < 1e-3 * peak);
+        }
+    }
+
+    /**
+     * Test of sqrt method, of class net.sharedmemory.tuner.FixedFFT.
+     */
+    public void testsqrt() {
+        System.out.println("fixed sqrt");
+        long[] values = {0, 1, 2, 3, 4, 99, 100, 101, 32767L * 32767L, (1L << 30) - 1};
+        for (int i = 0; i < values.length; i++) {
+            long root = FixedFFT.sqrt(values[i]);
+            assertTrue("sqrt " + values[i] + " was " + root, root * root <= values[i] && (root + 1) * (root + 1) > values[i]);
+        }
+
+        // Larger numbers are only approximate.
+        long[] large = {1L << 30, 65535L * 65535L, 1L << 40, (1L << 62) - 1};
+        for (int i = 0; i < large.length; i++) {
+            double root = FixedFFT.sqrt(large[i]);
+            double expected = Math.sqrt(large[i]);
+            assertTrue("sqrt " + large[i] + " was " + root, Math.abs(root - expected) < expected / (1 << 14));
+        }
+    }
+
+    /**
+     * The error relative to the largest bin must be small.
+     */
+    private void assertSimilar(int[] ixr, int[] ixi, double scale, double[] xr, double[] xi, int bins) {
+        double peak = 0.0;
+        double error = 0.0;
+        for (int i = 0; i < bins; i++) {
+            peak = Math.max(peak, Math.abs(xr[i]) + Math.abs(xi[i]));
+            error = Math.max(error, Math.abs(ixr[i] * scale - xr[i]) + Math.abs(ixi[i] * scale - xi[i]));
+        }
+        assertTrue("error " + error + " of " + peak, error < 1e-3 * peak);
+    }
+
+    /**
+     * Creates n samples of a tone with some noise, as 16 bit little-endian
+     * PCM.
+     */
+    private byte[] noisyTone(int n) {
+        Random random = new Random(1);
+        byte[] samples = new byte[2 * n];
+        for (int i = 0; i < n; i++) {
+            int sample = (int)(20000.0 * Math.sin(2.0 * Math.PI * 440.0 * i / 8000.0) + 5000.0 * (random.nextDouble() - 0.5));
+            samples[2 * i] = (byte)sample;
+            samples[2 * i + 1] = (byte)(sample >> 8);
+        }
+        return samples;
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new FixedFFTTest("testdoFFT", new TestMethod(){ public void run(TestCase tc) {((FixedFFTTest) tc).testdoFFT();}}));
+        suite.addTest(new FixedFFTTest("testdoRealFFT", new TestMethod(){ public void run(TestCase tc) {((FixedFFTTest) tc).testdoRealFFT();}}));
+        suite.addTest(new FixedFFTTest("testsqrt", new TestMethod(){ public void run(TestCase tc) {((FixedFFTTest) tc).testsqrt();}}));
+        return suite;
+    }
+}
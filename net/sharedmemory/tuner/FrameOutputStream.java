@@ -0,0 +1,108 @@
+/*
+ * FrameOutputStream.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+import java.io.OutputStream;
+
+/**
+ * Slices a continuous stream of raw samples into frames and commits them
+ * to the shared Buffer.  Every byte written ends up in a frame, in order,
+ * unless the Buffer is full.  Then the writer either waits for room or,
+ * if it must not be held up, the frame is dropped.  The dropped samples
+ * are counted and the Buffer is told, so the reader can see the gap.
+ *
+ * @author David Keen
+ */
+public class FrameOutputStream extends OutputStream {
+    private Buffer buffer;
+    private int frameLength;
+    private boolean block;      // Wait for room rather than drop frames.
+
+    private byte[] frame;       // The frame being filled.
+    private int position;       // How much of it has been filled.
+    private boolean dropping;   // True if the current frame is being dropped.
+    private long dropped;       // 16 bit samples dropped because the Buffer was full.
+
+    /**
+     * Creates a new instance of FrameOutputStream
+     *
+     * @param buffer the shared Buffer.
+     * @param frameLength the number of bytes in each frame, two to a sample.
+     * @param block true to wait for room in the Buffer, false to drop
+     * frames when it is full.
+     */
+    public FrameOutputStream(Buffer buffer, int frameLength, boolean block) {
+        this.buffer = buffer;
+        this.frameLength = frameLength;
+        this.block = block;
+    }
+
+    public void write(int b) {
+        if (position == 0) {
+            startFrame();
+        }
+        if (!dropping) {
+            frame[position] = (byte)b;
+        }
+        if (++position == frameLength) {
+            endFrame();
+        }
+    }
+
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (position == 0) {
+                startFrame();
+            }
+            int n = Math.min(len, frameLength - position);
+            if (!dropping) {
+                System.arraycopy(b, off, frame, position, n);
+            }
+            position += n;
+            off += n;
+            len -= n;
+            if (position == frameLength) {
+                endFrame();
+            }
+        }
+    }
+
+    /**
+     * Returns how many samples have been dropped because the Buffer was full.
+     * Each sample is two bytes, so a dropped frame is half its length.
+     *
+     * @return the number of samples dropped.
+     */
+    public long getDroppedSamples() {
+        return dropped;
+    }
+
+    private void startFrame() {
+        // acquire only gives up if the thread is interrupted.
+        frame = block ? buffer.acquire() : buffer.tryAcquire();
+        dropping = (frame == null);
+    }
+
+    private void endFrame() {
+        if (dropping) {
+            dropped += frameLength / 2;
+            buffer.drop();
+            Metrics.count(Metrics.DROPPED, 1);
+        } else {
+            buffer.commit();
+            committed();
+        }
+        frame = null;
+        position = 0;
+    }
+
+    /**
+     * Called after each frame is committed to the Buffer.  Override it to
+     * let the consumer know there is a frame to read.
+     */
+    protected void committed() {
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * FrameSizer.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * Chooses how many samples to analyse from the note being played and
+ * how long the analysis takes.  Low notes need a long frame to resolve
+ * them, while high notes are resolved by a short one that is quicker to
+ * analyse and follows the note sooner.  A frame size is only used while
+ * its analysis keeps up with the samples coming in.
+ *
+ * @author David Keen
+ */
+public class FrameSizer {
+
+    // A bin must be no wider than a quarter of a semitone at the note.
+    private static final double BIN_FRACTION = 0.0149;
+
+    // A semitone as a frequency ratio.  A note must be this far past the
+    // boundary between two sizes before the size changes, so a note on
+    // the boundary doesn't flip it every frame.
+    private static final double SEMITONE = 1.0594630943592953;
+
+    private int minPower;
+    private int maxPower;
+    private int rate;
+    private long budget;        // The most ms an analysis may take.
+
+    private int power;          // The size in use.
+    private int wanted;         // The size the note needs.
+    private int limit;          // The largest size the load allows.
+    private double[] cost;      // Average ms for each size, or 0.
+
+    /**
+     * Creates a new instance of FrameSizer, starting at the smallest size.
+     *
+     * @param minPower the smallest frame is 2 raised to this power bytes long,
+     * so half as many 16 bit samples.
+     * @param maxPower the largest frame is 2 raised to this power bytes long.
+     * @param rate the sample rate in Hz.
+     * @param budget the most ms an analysis may take to keep up.
+     */
+    public FrameSizer(int minPower, int maxPower, int rate, long budget) {
+        this.minPower = minPower;
+        this.maxPower = maxPower;
+        this.rate = rate;
+        this.budget = budget;
+        power = minPower;
+        wanted = minPower;
+        limit = maxPower;
+        cost = new double[maxPower - minPower + 1];
+    }
+
+    /**
+     * Returns the size of frame to analyse next.
+     *
+     * @return the frame is 2 raised to this power.
+     */
+    public int getPower() {
+        return power;
+    }
+
+    /**
+     * Returns the largest size the analysis has kept up with.
+     *
+     * @return the power of the largest frame allowed.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Tells the sizer the steady frequency last found.
+     *
+     * @param frequency the frequency in Hz.
+     */
+    public void heard(double frequency) {
+        int size = sizeFor(frequency);
+        if ((size > wanted && sizeFor(frequency * SEMITONE) > wanted)
+                || (size < wanted && sizeFor(frequency / SEMITONE) < wanted)) {
+            wanted = size;
+        }
+        power = Math.min(wanted, limit);
+    }
+
+    /**
+     * Tells the sizer how long the last analysis took, at the size it
+     * chose.  Too long and the size is capped one smaller.  The cap is
+     * raised again when the next size up, which takes about twice as
+     * long, would take no more than half the time there is.
+     *
+     * @param ms the time the analysis took.
+     */
+    public void timed(long ms) {
+        int i = power - minPower;
+        cost[i] = (cost[i] == 0.0) ? ms : (3.0 * cost[i] + ms) / 4.0;
+
+        if (cost[i] > budget && power > minPower) {
+            limit = power - 1;
+        } else if (power == limit && limit < maxPower && 4.0 * cost[i] <= budget) {
+            limit++;
+        }
+        power = Math.min(wanted, limit);
+    }
+
+    /**
+     * Returns the smallest size whose bins are narrow enough for a note.
+     * A frame of 2 raised to p bytes holds half as many samples, so its
+     * bins are rate divided by that many Hz wide.
+     */
+    private int sizeFor(double frequency) {
+        for (int p = minPower; p < maxPower; p++) {
+            if ((double)rate / ((1 << p) / 2) <= frequency * BIN_FRACTION) {
+                return p;
+            }
+        }
+        return maxPower;
+    }
+}
@@ -0,0 +1,80 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+
+public class FrameSizerTest extends TestCase {
+
+    public FrameSizerTest() {
+    }
+
+    public FrameSizerTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Test of heard method, of class net.sharedmemory.tuner.FrameSizer.
+     */
+    public void testheard() {
+        System.out.println("heard");
+        FrameSizer instance = new FrameSizer(12, 13, 8000, 100);
+        assertEquals(12, instance.getPower());
+
+        // 4096 bytes are 2048 samples, which resolve down to 262Hz.
+        instance.heard(880.0);
+        assertEquals(12, instance.getPower());
+        instance.heard(164.8);
+        assertEquals(13, instance.getPower());
+
+        // Within a semitone of the boundary the size stays put.
+        instance.heard(270.0);
+        assertEquals(13, instance.getPower());
+        instance.heard(280.0);
+        assertEquals(12, instance.getPower());
+        instance.heard(255.0);
+        assertEquals(12, instance.getPower());
+        instance.heard(240.0);
+        assertEquals(13, instance.getPower());
+    }
+
+    /**
+     * Test of timed method, of class net.sharedmemory.tuner.FrameSizer.
+     */
+    public void testtimed() {
+        System.out.println("timed");
+        FrameSizer instance = new FrameSizer(11, 13, 8000, 100);
+        instance.heard(55.0);
+        assertEquals(13, instance.getPower());
+
+        // Too slow, so a smaller size is used whatever the note.
+        instance.timed(150);
+        assertEquals(12, instance.getLimit());
+        assertEquals(12, instance.getPower());
+        instance.heard(55.0);
+        assertEquals(12, instance.getPower());
+
+        // Fast enough for twice the work, so the larger size comes back.
+        instance.timed(30);
+        assertEquals(12, instance.getPower());
+        instance.timed(10);
+        assertEquals(13, instance.getPower());
+
+        // The smallest size is never given up.
+        instance = new FrameSizer(11, 13, 8000, 100);
+        instance.timed(500);
+        assertEquals(11, instance.getPower());
+        assertEquals(13, instance.getLimit());
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new FrameSizerTest("testheard", new TestMethod(){ public void run(TestCase tc) {((FrameSizerTest) tc).testheard();}}));
+        suite.addTest(new FrameSizerTest("testtimed", new TestMethod(){ public void run(TestCase tc) {((FrameSizerTest) tc).testtimed();}}));
+        return suite;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * GoertzelDetector.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * Finds the pitch of a frame with a bank of Goertzel filters tuned to the
+ * notes, rather than a full FFT.  Each filter is updated sample by sample
+ * so the cost is proportional to the number of notes, not N log N.
+ * <p>
+ * A note is scored by the product of the power at its fundamental and
+ * its second and third harmonics, like the Harmonic Product Spectrum.
+ * The second harmonic is the note an octave up and the third is within
+ * 2 cents of the note a twelfth up, so the bank only needs filters for
+ * the notes and the 19 semitones above them.  The frequency of the best
+ * note is then refined with three filters around its strongest harmonic.
+ *
+ * @author David Keen
+ */
+public class GoertzelDetector implements PitchDetector {
+
+    // Semitones from a note to its second and third harmonics.
+    private static final int[] HARMONIC_STEPS = {0, 12, 19};
+
+    // How many bins the refinement may move from the note.
+    private static final int MAX_STEPS = 4;
+
+    // The refinement stays within a quarter tone, 2^(1/24), of the note,
+    // give or take the bin it lands in.
+    private static final double QUARTER_TONE = 1.0293022366434921;
+
+    private int rate;           // The sample rate in Hz.
+    private int notes;          // The notes we can detect.
+
+    private double[] x;         // The decoded, windowed samples.
+    private double[] hann;      // The window, to keep the filters' leakage low.
+    private double[] frequencies;   // The centre frequency of each filter.
+    private double[] coefficients;  // 2 cos(w) for each filter.
+    private double[] s1;        // The previous output of each filter.
+    private double[] s2;        // The output before that.
+    private double[] power;     // The power at each filter after a frame.
+
+    /**
+     * Creates a new instance of GoertzelDetector.
+     *
+     * @param power there are 2 raised to this power bytes, so half as many
+     * 16 bit samples, in each frame.
+     * @param rate the sample rate in Hz.
+     */
+    public GoertzelDetector(int power, int rate) {
+        int length = (1 << power) / 2;
+        this.rate = rate;
+        notes = Note.getNoteCount();
+
+        x = new double[length];
+        hann = new double[length];
+        for (int i = 0; i < length; i++) {
+            hann[i] = 0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / length);
+        }
+
+        // Past the top note each filter is an octave above the one 12 below.
+        int filters = notes + HARMONIC_STEPS[HARMONIC_STEPS.length - 1];
+        frequencies = new double[filters];
+        coefficients = new double[filters];
+        for (int k = 0; k < filters; k++) {
+            frequencies[k] = (k < notes) ? Note.getFrequency(k) : 2.0 * frequencies[k - 12];
+            coefficients[k] = 2.0 * Math.cos(2.0 * Math.PI * frequencies[k] / rate);
+        }
+        s1 = new double[filters];
+        s2 = new double[filters];
+        this.power = new double[filters];
+    }
+
+    /**
+     * Finds the fundamental frequency of a frame of 16 bit samples.
+     *
+     * @param samples the raw samples, 2^power bytes of them.
+     * @return the frequency in Hz, or 0 if the frame is silent.
+     */
+    public double analyse(byte[] samples) {
+        Pcm.decode(samples, x);
+        for (int i = 0; i < x.length; i++) {
+            x[i] *= hann[i];
+        }
+
+        // Run the whole bank over the frame, a sample at a time.
+        int filters = coefficients.length;
+        for (int k = 0; k < filters; k++) {
+            s1[k] = 0.0;
+            s2[k] = 0.0;
+        }
+        for (int i = 0; i < x.length; i++) {
+            double sample = x[i];
+            for (int k = 0; k < filters; k++) {
+                double s = sample + coefficients[k] * s1[k] - s2[k];
+                s2[k] = s1[k];
+                s1[k] = s;
+            }
+        }
+        for (int k = 0; k < filters; k++) {
+            power[k] = s1[k] * s1[k] + s2[k] * s2[k] - coefficients[k] * s1[k] * s2[k];
+        }
+
+        // Score each note by the product of its harmonics.
+        int best = -1;
+        double bestScore = 0.0;
+        for (int note = 0; note < notes; note++) {
+            double score = 1.0;
+            for (int h = 0; h < HARMONIC_STEPS.length; h++) {
+                score *= power[note + HARMONIC_STEPS[h]];
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = note;
+            }
+        }
+        if (best < 0) {
+            return 0.0;
+        }
+
+        // Refine on the strongest harmonic, where a bin is fewest cents.
+        int harmonic = 0;
+        for (int h = 1; h < HARMONIC_STEPS.length; h++) {
+            if (power[best + HARMONIC_STEPS[h]] > power[best + HARMONIC_STEPS[harmonic]]) {
+                harmonic = h;
+            }
+        }
+        double frequency = (harmonic + 1) * Note.getFrequency(best);
+        return refine(frequency) / (harmonic + 1);
+    }
+
+    /**
+     * Returns null as the filters don't make a spectrum.
+     *
+     * @return null.
+     */
+    public double[] getSpectrum() {
+        return null;
+    }
+
+    /**
+     * Finds the peak near a frequency by fitting a parabola through the
+     * magnitudes at it and a bin either side.  If a neighbour is higher
+     * we move a bin towards it first, as a note can be out by more than
+     * a bin, but not past a quarter tone from the note or down to 0 Hz.
+     *
+     * @param frequency the frequency of the peak to the nearest note.
+     * @return the refined frequency in Hz.
+     */
+    private double refine(double frequency) {
+        double bin = (double)rate / x.length;
+        double lowest = Math.max(frequency / QUARTER_TONE - 0.5 * bin, bin);
+        double highest = frequency * QUARTER_TONE + 0.5 * bin;
+        double below = magnitude(frequency - bin);
+        double centre = magnitude(frequency);
+        double above = magnitude(frequency + bin);
+
+        for (int step = 0; step < MAX_STEPS; step++) {
+            if (below > centre && below >= above && frequency - bin >= lowest) {
+                frequency -= bin;
+                above = centre;
+                centre = below;
+                below = magnitude(frequency - bin);
+            } else if (above > centre && frequency + bin <= highest) {
+                frequency += bin;
+                below = centre;
+                centre = above;
+                above = magnitude(frequency + bin);
+            } else {
+                break;
+            }
+        }
+
+        double denominator = below - 2.0 * centre + above;
+        if (denominator >= 0.0) {
+            // Not a peak, so leave it as it is.
+            return frequency;
+        }
+
+        // If the walk stopped short of the peak the parabola may turn
+        // far away, so go no further than half a bin.
+        double delta = (below - above) / (2.0 * denominator);
+        return frequency + bin * Math.max(-0.5, Math.min(0.5, delta));
+    }
+
+    /**
+     * Runs a single Goertzel filter over the windowed frame.
+     *
+     * @param frequency the centre frequency in Hz.
+     * @return the magnitude at the frequency.
+     */
+    private double magnitude(double frequency) {
+        double coefficient = 2.0 * Math.cos(2.0 * Math.PI * frequency / rate);
+        double q1 = 0.0, q2 = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            double s = x[i] + coefficient * q1 - q2;
+            q2 = q1;
+            q1 = s;
+        }
+        return Math.sqrt(q1 * q1 + q2 * q2 - coefficient * q1 * q2);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * HarmonicProductSpectrum.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * Finds the fundamental in a power spectrum with the Harmonic Product
+ * Spectrum.  Each bin is multiplied by the average of the bins around
+ * each of its harmonics, as the spectrum downsampled by that factor would
+ * hold, but the downsampled spectra are never built: the products are
+ * worked out as the range is scanned, so nothing is allocated and only
+ * the bins that can be the fundamental are visited.
+ *
+ * @author David Keen
+ */
+public class HarmonicProductSpectrum {
+
+    // The number of harmonics FFT.HPSMax uses.
+    public static final int DEFAULT_HARMONICS = 3;
+
+    private int harmonics;      // The fundamental and its overtones.
+    private boolean logarithmic;  // Sum the logs instead of multiplying.
+    private double[] average;   // 1/h for each harmonic h.
+
+    /**
+     * Creates a new instance of HarmonicProductSpectrum.
+     *
+     * @param harmonics the number of harmonics to multiply, counting the
+     * fundamental.
+     */
+    public HarmonicProductSpectrum(int harmonics) {
+        this(harmonics, false);
+    }
+
+    /**
+     * Creates a new instance of HarmonicProductSpectrum that can add the
+     * logs of the harmonics instead of multiplying them.  The sum can't
+     * overflow however many harmonics there are, but a log costs far more
+     * than a multiply.
+     *
+     * @param harmonics the number of harmonics to multiply, counting the
+     * fundamental.
+     * @param logarithmic true to add the logs.
+     */
+    public HarmonicProductSpectrum(int harmonics, boolean logarithmic) {
+        if (harmonics < 1) {
+            throw new IllegalArgumentException("Harmonics must be > 0");
+        }
+        this.harmonics = harmonics;
+        this.logarithmic = logarithmic;
+
+        average = new double[harmonics + 1];
+        for (int h = 1; h <= harmonics; h++) {
+            average[h] = 1.0 / h;
+        }
+    }
+
+    /**
+     * Returns the number of harmonics multiplied.
+     *
+     * @return the harmonics, counting the fundamental.
+     */
+    public int getHarmonics() {
+        return harmonics;
+    }
+
+    /**
+     * Finds the bin with the largest product of harmonics.  A harmonic past
+     * the end of the spectrum counts as 1, as it does with FFT.downSample.
+     *
+     * @param power the power (squared magnitude) spectrum.
+     * @param min the minimum index to scan.
+     * @param max the index to stop scanning at.
+     * @return the index containing the max value (the fundamental), or 0
+     * if nothing in range is above zero.
+     */
+    public int findMax(double[] power, int min, int max) {
+        int maxIdx = 0;
+        double maxValue = logarithmic ? Double.NEGATIVE_INFINITY : 0.0;
+
+        // Below this every harmonic is in the spectrum, so the inner loop
+        // needs no checks.
+        int full = Math.max(min, Math.min(max, power.length / harmonics));
+        int i = min;
+        if (harmonics == 3 && !logarithmic) {
+            // The usual case written out.  The bins of each harmonic are
+            // stepped through rather than counted out in inner loops,
+            // which is several times faster compiled or interpreted.
+            double half = average[2];
+            double third = average[3];
+            for (int i2 = 2 * i, i3 = 3 * i; i < full; i++, i2 += 2, i3 += 3) {
+                double value = power[i]
+                        * ((power[i2] + power[i2 + 1]) * half)
+                        * ((power[i3] + power[i3 + 1] + power[i3 + 2]) * third);
+                if (value > maxValue) {
+                    maxValue = value;
+                    maxIdx = i;
+                }
+            }
+        }
+        for (; i < full; i++) {
+            double value = logarithmic ? MathUtils.log(power[i]) : power[i];
+            int from = i;
+            for (int h = 2; h <= harmonics; h++) {
+                from += i;
+                int to = from + h;
+                double sum = power[from];
+                for (int j = from + 1; j < to; j++) {
+                    sum += power[j];
+                }
+                if (logarithmic) {
+                    value += MathUtils.log(sum * average[h]);
+                } else {
+                    value *= sum * average[h];
+                }
+            }
+            if (value > maxValue) {
+                maxValue = value;
+                maxIdx = i;
+            }
+        }
+
+        // The rest stop at the end of the spectrum.
+        for (; i < max; i++) {
+            double value = logarithmic ? 0.0 : 1.0;
+            for (int h = 1; h <= harmonics && h * (i + 1) <= power.length; h++) {
+                double sum = 0.0;
+                for (int j = 0; j < h; j++) {
+                    sum += power[h * i + j];
+                }
+                if (logarithmic) {
+                    value += MathUtils.log(sum * average[h]);
+                } else {
+                    value *= sum * average[h];
+                }
+            }
+            if (value > maxValue) {
+                maxValue = value;
+                maxIdx = i;
+            }
+        }
+        return maxIdx;
+    }
+}
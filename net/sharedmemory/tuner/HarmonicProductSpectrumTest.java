@@ -0,0 +1,63 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+
+public class HarmonicProductSpectrumTest extends TestCase {
+
+    public HarmonicProductSpectrumTest() {
+    }
+
+    public HarmonicProductSpectrumTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Test of findMax method, of class net.sharedmemory.tuner.HarmonicProductSpectrum.
+     */
+    public void testfindMax() {
+        System.out.println("findMax");
+
+        // A note at bin 20 with weaker harmonics and a louder stray peak at
+        // bin 50 that has none.
+        double[] power = new double[256];
+        for (int i = 0; i < power.length; i++) {
+            power[i] = 1.0;
+        }
+        power[20] = 100.0;
+        power[40] = 80.0;
+        power[60] = 60.0;
+        power[80] = 40.0;
+        power[100] = 20.0;
+        power[50] = 200.0;
+
+        assertEquals(50, new HarmonicProductSpectrum(1).findMax(power, 10, 100));
+        assertEquals(20, new HarmonicProductSpectrum(3).findMax(power, 10, 100));
+        assertEquals(20, new HarmonicProductSpectrum(3, true).findMax(power, 10, 100));
+        assertEquals(20, new HarmonicProductSpectrum(5).findMax(power, 10, 100));
+
+        // It agrees with FFT.HPSMax on the same spectrum.
+        FFT fft = new FFT(9);
+        double[] times2 = fft.downSample(power, 2);
+        double[] times3 = fft.downSample(power, 3);
+        for (int max = 60; max <= 128; max += 17) {
+            assertEquals(fft.HPSMax(power, times2, times3, 10, max),
+                    new HarmonicProductSpectrum(3).findMax(power, 10, max));
+        }
+
+        // Past the end of the spectrum a harmonic counts as 1.
+        power[250] = 1.0e6;
+        assertEquals(250, new HarmonicProductSpectrum(3).findMax(power, 10, 256));
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new HarmonicProductSpectrumTest("testfindMax", new TestMethod(){ public void run(TestCase tc) {((HarmonicProductSpectrumTest) tc).testfindMax();}}));
+        return suite;
+    }
+}
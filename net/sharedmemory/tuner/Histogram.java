@@ -0,0 +1,165 @@
+/*
+ * Histogram.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * Counts how often each value turns up, for timings.  Below 4 each value
+ * has its own bucket; above that each power of two is split into 4
+ * buckets, so a value is known to within 25% whatever its size and the
+ * whole range of a long fits in a few hundred counts.  Recording a value
+ * allocates nothing.
+ *
+ * @author David Keen
+ */
+public class Histogram {
+
+    // Buckets in each power of two, as a power of two itself.
+    private static final int SUB_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BITS);
+
+    private int[] counts;
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Creates a new instance of Histogram
+     */
+    public Histogram() {
+        counts = new int[BUCKETS];
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value, which mustn't be negative.
+     */
+    public synchronized void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Returns how many values have been recorded.
+     *
+     * @return the number of values.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the values.
+     *
+     * @return the mean, or 0 if there are none.
+     */
+    public synchronized double getMean() {
+        return (count == 0) ? 0.0 : (double)sum / count;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return the maximum, or 0 if there are none.
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the value that a percentage of the values are at or below.
+     * It is the top of the bucket the percentile falls in, so it may be
+     * up to 25% high.
+     *
+     * @param percent the percentage, 0 to 100.
+     * @return the percentile, or 0 if there are no values.
+     */
+    public synchronized long getPercentile(double percent) {
+        long wanted = (long)Math.ceil(count * percent / 100.0);
+        if (wanted < 1) {
+            wanted = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= wanted) {
+                return Math.min(highest(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forgets all the values.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * Returns a copy that won't change as more values are recorded.
+     *
+     * @return the copy.
+     */
+    public synchronized Histogram snapshot() {
+        Histogram h = new Histogram();
+        System.arraycopy(counts, 0, h.counts, 0, BUCKETS);
+        h.count = count;
+        h.sum = sum;
+        h.max = max;
+        return h;
+    }
+
+    /**
+     * Summarises the values on one line.
+     *
+     * @return the count, mean, median, 99th percentile and maximum.
+     */
+    public synchronized String toString() {
+        return "n=" + count + " mean=" + ((long)(getMean() * 10.0) / 10.0) + " p50=" + getPercentile(50.0)
+                + " p99=" + getPercentile(99.0) + " max=" + max;
+    }
+
+    /**
+     * Finds the bucket for a value.
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int)value;
+        }
+        int e = SUB_BITS;       // The highest bit set in value.
+        while ((value >> (e + 1)) != 0) {
+            e++;
+        }
+        int sub = (int)(value >> (e - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS * (e - SUB_BITS + 1) + sub;
+    }
+
+    /**
+     * Returns the largest value that goes in a bucket.
+     */
+    private static long highest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int e = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long width = 1L << (e - SUB_BITS);
+        return (SUB_BUCKETS + bucket % SUB_BUCKETS) * width + width - 1;
+    }
+}
@@ -0,0 +1,89 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+
+public class HistogramTest extends TestCase {
+
+    public HistogramTest() {
+    }
+
+    public HistogramTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Test of record and getPercentile methods, of class
+     * net.sharedmemory.tuner.Histogram.
+     */
+    public void testrecord() {
+        System.out.println("record");
+        Histogram instance = new Histogram();
+        assertEquals(0, instance.getPercentile(50.0));
+
+        for (int i = 0; i < 100; i++) {
+            instance.record(i);
+        }
+        assertEquals(100, instance.getCount());
+        assertEquals(99, instance.getMax());
+        assertTrue(instance.getMean() == 49.5);
+
+        // Percentiles are the top of their bucket, no more than 25% high.
+        assertEquals(0, instance.getPercentile(1.0));
+        assertEquals(3, instance.getPercentile(4.0));
+        assertEquals(55, instance.getPercentile(50.0));
+        assertEquals(99, instance.getPercentile(99.0));
+        assertEquals(99, instance.getPercentile(100.0));
+
+        long[] values = {5, 1000, 123456789L, 1L << 40, Long.MAX_VALUE};
+        for (int i = 0; i < values.length; i++) {
+            Histogram h = new Histogram();
+            h.record(values[i] - 1);
+            h.record(values[i]);
+            long p = h.getPercentile(50.0);
+            assertTrue("value " + values[i] + " was " + p, p >= values[i] - 1 && p - values[i] <= values[i] / 4);
+        }
+
+        // A snapshot doesn't change with the original.
+        Histogram copy = instance.snapshot();
+        instance.reset();
+        assertEquals(0, instance.getCount());
+        assertEquals(0, instance.getMax());
+        assertEquals(100, copy.getCount());
+        assertEquals(55, copy.getPercentile(50.0));
+    }
+
+    /**
+     * Test of the counters and stages, of class net.sharedmemory.tuner.Metrics.
+     */
+    public void testMetrics() {
+        System.out.println("Metrics");
+        Metrics.reset();
+        Metrics.count(Metrics.REJECTED, 2);
+        Metrics.count(Metrics.REJECTED, 1);
+        Metrics.time(Metrics.NOTE, System.currentTimeMillis());
+        assertEquals(3, Metrics.getCounter(Metrics.REJECTED));
+        assertEquals(0, Metrics.getCounter(Metrics.DROPPED));
+        assertEquals(1, Metrics.getHistogram(Metrics.NOTE).getCount());
+        assertTrue(Metrics.getReport().indexOf("Rejected: 3") >= 0);
+
+        // Frames dropped by a full buffer are counted.
+        FrameOutputStream out = new FrameOutputStream(new Buffer(4, 1), 4, false);
+        byte[] data = new byte[12];
+        out.write(data, 0, data.length);
+        assertEquals(2, Metrics.getCounter(Metrics.DROPPED));
+        Metrics.reset();
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new HistogramTest("testrecord", new TestMethod(){ public void run(TestCase tc) {((HistogramTest) tc).testrecord();}}));
+        suite.addTest(new HistogramTest("testMetrics", new TestMethod(){ public void run(TestCase tc) {((HistogramTest) tc).testMetrics();}}));
+        return suite;
+    }
+}
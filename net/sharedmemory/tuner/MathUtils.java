@@ -0,0 +1,109 @@
+/*
+ * MathUtils.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * Maths functions that CLDC leaves out of java.lang.Math.
+ *
+ * @author David Keen
+ */
+public class MathUtils {
+
+    public static final double LN2 = 0.6931471805599453;
+
+    private static final double SQRT2 = 1.4142135623730951;
+
+    /**
+     * Returns the natural logarithm of a number.  The exponent is taken
+     * straight from the bits of the double and the logarithm of the
+     * mantissa, between 1/sqrt(2) and sqrt(2), comes from the series for
+     * 2 atanh(s), which converges fast there.
+     *
+     * @param x the number.
+     * @return the natural logarithm of x, negative infinity for 0 or NaN
+     * for a negative number.
+     */
+    public static double log(double x) {
+        if (x <= 0.0 || x != x) {
+            return (x == 0.0) ? Double.NEGATIVE_INFINITY : Double.NaN;
+        }
+        if (x == Double.POSITIVE_INFINITY) {
+            return x;
+        }
+
+        long bits = Double.doubleToLongBits(x);
+        int exponent = (int)((bits >> 52) & 0x7ff);
+        if (exponent == 0) {
+            // Subnormal, so scale it up by 2^54 first.
+            return log(x * 18014398509481984.0) - 54 * LN2;
+        }
+        exponent -= 1023;
+        double m = Double.longBitsToDouble((bits & 0x000fffffffffffffL) | 0x3ff0000000000000L);
+        if (m > SQRT2) {
+            m /= 2.0;
+            exponent++;
+        }
+
+        double s = (m - 1.0) / (m + 1.0);
+        double s2 = s * s;
+        double term = s;
+        double sum = 0.0;
+        for (int k = 1; k < 40; k += 2) {
+            double next = sum + term / k;
+            if (next == sum) {
+                break;
+            }
+            sum = next;
+            term *= s2;
+        }
+        return exponent * LN2 + 2.0 * sum;
+    }
+
+    /**
+     * Returns the base 2 logarithm of a number.
+     *
+     * @param x the number.
+     * @return the base 2 logarithm of x.
+     */
+    public static double log2(double x) {
+        return log(x) / LN2;
+    }
+
+    /**
+     * Returns 2 raised to a power.  The whole part of the power goes
+     * straight into the exponent bits and the rest, between -1/2 and 1/2,
+     * comes from the series for e^y.
+     *
+     * @param x the power.
+     * @return 2 to the power of x.
+     */
+    public static double pow2(double x) {
+        if (x != x) {
+            return x;
+        }
+        if (x > 1023.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (x < -1022.0) {
+            // Too small for a normal double; near enough to zero for us.
+            return (x < -1075.0) ? 0.0 : pow2(x + 64.0) / 18446744073709551616.0;
+        }
+
+        int whole = (int)Math.floor(x + 0.5);
+        double y = (x - whole) * LN2;
+        double term = 1.0;
+        double sum = 1.0;
+        for (int k = 1; k < 30; k++) {
+            term *= y / k;
+            double next = sum + term;
+            if (next == sum) {
+                break;
+            }
+            sum = next;
+        }
+        return sum * Double.longBitsToDouble((long)(whole + 1023) << 52);
+    }
+}
@@ -0,0 +1,61 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+
+public class MathUtilsTest extends TestCase {
+
+    public MathUtilsTest() {
+    }
+
+    public MathUtilsTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Test of log method, of class net.sharedmemory.tuner.MathUtils.
+     */
+    public void testlog() {
+        System.out.println("log");
+        double[] values = {1.0, 2.0, 0.5, Math.E, 10.0, 440.0, 1.0e-300, 4.9e-320, 1.7e308, 1.41421356, 0.70710678};
+        double[] expected = {0.0, 0.6931471805599453, -0.6931471805599453, 1.0, 2.302585092994046,
+            6.0867747269123065, -690.7755278982137, -735.2379653543322, 709.7268368932282,
+            0.3465735886019411, -0.3465735919580042};
+        for (int i = 0; i < values.length; i++) {
+            double result = MathUtils.log(values[i]);
+            assertTrue("log " + values[i] + " was " + result, Math.abs(result - expected[i]) < 1e-12 * Math.max(1.0, Math.abs(expected[i])));
+        }
+        assertTrue(MathUtils.log(0.0) == Double.NEGATIVE_INFINITY);
+        assertTrue(Double.isNaN(MathUtils.log(-1.0)));
+    }
+
+    /**
+     * Test of pow2 and log2 methods, of class net.sharedmemory.tuner.MathUtils.
+     */
+    public void testpow2() {
+        System.out.println("pow2");
+        double[] values = {0.0, 1.0, -1.0, 0.5, 10.25, -3.75, 1.0 / 12.0, -57.0 / 12.0, 1000.5};
+        double[] expected = {1.0, 2.0, 0.5, 1.4142135623730951, 1217.7480857627863,
+            0.07432544468767006, 1.0594630943592953, 0.03716272234383503, 1.5153420044823246e301};
+        for (int i = 0; i < values.length; i++) {
+            double result = MathUtils.pow2(values[i]);
+            assertTrue("pow2 " + values[i] + " was " + result, Math.abs(result - expected[i]) < 1e-13 * expected[i]);
+            result = MathUtils.log2(expected[i]);
+            assertTrue("log2 " + expected[i] + " was " + result, Math.abs(result - values[i]) < 1e-12 * Math.max(1.0, Math.abs(values[i])));
+        }
+        assertTrue(MathUtils.pow2(2000.0) == Double.POSITIVE_INFINITY);
+        assertTrue(MathUtils.pow2(-2000.0) == 0.0);
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new MathUtilsTest("testlog", new TestMethod(){ public void run(TestCase tc) {((MathUtilsTest) tc).testlog();}}));
+        suite.addTest(new MathUtilsTest("testpow2", new TestMethod(){ public void run(TestCase tc) {((MathUtilsTest) tc).testpow2();}}));
+        return suite;
+    }
+}
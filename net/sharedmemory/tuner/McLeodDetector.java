@@ -0,0 +1,153 @@
+/*
+ * McLeodDetector.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * Finds the pitch of a frame with the McLeod Pitch Method (McLeod and
+ * Wyvill, 2005).  The normalised square difference function is built
+ * from an autocorrelation done with the FFT, so a frame costs
+ * O(n log n) rather than O(n^2).  Of its key maxima the first
+ * one close to the highest is taken as the period, which avoids picking
+ * a multiple of the period on a steady note.
+ *
+ * @author David Keen
+ */
+public class McLeodDetector implements PitchDetector {
+
+    // How close to the highest key maximum the chosen one must be.
+    private static final double CUTOFF = 0.9;
+
+    private int rate;           // The sample rate in Hz.
+    private int length;         // Samples in a frame.
+    private int minTau;         // The shortest period (lag) to look for.
+    private int maxTau;         // The longest period to look for.
+
+    private Autocorrelation autocorrelation;
+    private double[] x;         // The decoded samples.
+    private double[] nsdf;      // The normalised square difference function.
+
+    /**
+     * Creates a new instance of McLeodDetector.
+     *
+     * @param power there are 2 raised to this power bytes, so half as many
+     * 16 bit samples, in each frame.
+     * @param rate the sample rate in Hz.
+     */
+    public McLeodDetector(int power, int rate) {
+        this.rate = rate;
+        length = (1 << power) / 2;
+        minTau = Math.max(2, (int)(rate / Processor.MAX_HZ));
+        maxTau = Math.min(length / 2, (int)(rate / Processor.MIN_HZ) + 2);
+
+        autocorrelation = new Autocorrelation(power);
+        x = new double[length];
+        nsdf = new double[maxTau + 1];
+    }
+
+    /**
+     * Finds the fundamental frequency of a frame of 16 bit samples.
+     *
+     * @param samples the raw samples, 2^power bytes of them.
+     * @return the frequency in Hz.
+     */
+    public double analyse(byte[] samples) {
+        Pcm.decode(samples, x);
+        double[] r = autocorrelation.compute(x);
+
+        // nsdf(tau) = 2 r(tau) / m(tau), where m(tau) is the energy of the
+        // two overlapping parts, taken off one sample at a time.
+        double m = 2.0 * r[0];
+        nsdf[0] = 1.0;
+        for (int tau = 1; tau <= maxTau; tau++) {
+            m -= x[tau - 1] * x[tau - 1] + x[length - tau] * x[length - tau];
+            nsdf[tau] = (m > 0.0) ? 2.0 * r[tau] / m : 0.0;
+        }
+
+        // The first pass finds the highest key maximum, the second the
+        // first key maximum near it.
+        int best = keyMaximum(Double.MAX_VALUE);
+        if (best < 0) {
+            return 0.0;
+        }
+        best = keyMaximum(CUTOFF * height(best));
+        return rate / Autocorrelation.interpolate(nsdf, best);
+    }
+
+    /**
+     * Returns null as the McLeod Pitch Method doesn't make a spectrum.
+     *
+     * @return null.
+     */
+    public double[] getSpectrum() {
+        return null;
+    }
+
+    /**
+     * Scans the key maxima, the highest point between each positive going
+     * zero crossing and the next negative going one.
+     *
+     * @param threshold the value the key maximum must reach.
+     * @return the index of the first key maximum reaching the threshold,
+     * otherwise of the highest one, or -1 if there are none.
+     */
+    private int keyMaximum(double threshold) {
+        int highest = -1;
+        int tau = 1;
+
+        // Skip the lobe around zero lag.
+        while (tau < maxTau && nsdf[tau] > 0.0) {
+            tau++;
+        }
+        while (tau < maxTau) {
+            // Find the next positive region.
+            while (tau < maxTau && nsdf[tau] <= 0.0) {
+                tau++;
+            }
+            int peak = tau;
+            while (tau < maxTau && nsdf[tau] > 0.0) {
+                if (nsdf[tau] > nsdf[peak]) {
+                    peak = tau;
+                }
+                tau++;
+            }
+            if (tau >= maxTau) {
+                // The region runs past the longest period, so its peak
+                // may be further on.
+                break;
+            }
+            if (peak < minTau) {
+                continue;
+            }
+            if (height(peak) >= threshold) {
+                return peak;
+            }
+            if (highest < 0 || height(peak) > height(highest)) {
+                highest = peak;
+            }
+        }
+        return highest;
+    }
+
+    /**
+     * Returns the height of a key maximum at the top of a parabola fitted
+     * through it and its neighbours.  A short period falls between the
+     * samples, so the raw value would understate it against the peaks at
+     * its multiples.
+     *
+     * @param tau the lag of the key maximum.
+     * @return the interpolated height.
+     */
+    private double height(int tau) {
+        double a = nsdf[tau - 1];
+        double b = nsdf[tau];
+        double c = nsdf[tau + 1];
+        double denominator = a - 2.0 * b + c;
+        if (b < a || b < c || denominator >= 0.0) {
+            return b;
+        }
+        return b - (a - c) * (a - c) / (8.0 * denominator);
+    }
+}
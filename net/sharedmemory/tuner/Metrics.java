@@ -0,0 +1,125 @@
+/*
+ * Metrics.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * Where the time goes between capture and display.  Each stage of the
+ * pipeline records how long it took in a Histogram, and the frames are
+ * counted as they are processed, rejected by the steady-state filter,
+ * or dropped, shed or coalesced because the analysis fell behind, and
+ * the results that were never painted are counted too.  The clock only
+ * ticks in milliseconds, so stages much shorter than that mostly show 0.
+ *
+ * @author David Keen
+ */
+public class Metrics {
+
+    // The stages timed.
+    public static final int CAPTURE = 0;    // Recording a frame.
+    public static final int HANDOFF = 1;    // Waiting in the Buffer.
+    public static final int ANALYSIS = 2;   // The FFT and HPS, or other detector.
+    public static final int NOTE = 3;       // Looking up the note.
+    public static final int PAINT = 4;      // Painting the canvas.
+    public static final int LATENCY = 5;    // From capture to the end of paint.
+
+    // The frames counted.
+    public static final int PROCESSED = 0;  // Analysed.
+    public static final int REJECTED = 1;   // Failed the steady-state filter.
+    public static final int DROPPED = 2;    // Lost when the Buffer was full.
+    public static final int SHED = 3;       // Thrown away by the consumer.
+    public static final int COALESCED = 4;  // Hops merged into one analysis.
+    public static final int UNPAINTED = 5;  // Results unchanged or painted over.
+
+    private static final String[] STAGE_NAMES = {
+        "Capture", "Handoff", "Analysis", "Note", "Paint", "Latency"
+    };
+    private static final String[] COUNTER_NAMES = {
+        "Processed", "Rejected", "Dropped", "Shed", "Coalesced", "Unpainted"
+    };
+
+    private static final Histogram[] stages = new Histogram[STAGE_NAMES.length];
+    private static final long[] counters = new long[COUNTER_NAMES.length];
+
+    static {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Records how long a stage took.
+     *
+     * @param stage one of the stage constants.
+     * @param start when the stage started, from System.currentTimeMillis.
+     */
+    public static void time(int stage, long start) {
+        stages[stage].record(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param counter one of the counter constants.
+     * @param frames the number of frames to add.
+     */
+    public static void count(int counter, long frames) {
+        synchronized (counters) {
+            counters[counter] += frames;
+        }
+    }
+
+    /**
+     * Returns a copy of the timings of a stage.
+     *
+     * @param stage one of the stage constants.
+     * @return the times in ms.
+     */
+    public static Histogram getHistogram(int stage) {
+        return stages[stage].snapshot();
+    }
+
+    /**
+     * Returns a counter.
+     *
+     * @param counter one of the counter constants.
+     * @return the number of frames.
+     */
+    public static long getCounter(int counter) {
+        synchronized (counters) {
+            return counters[counter];
+        }
+    }
+
+    /**
+     * Describes every stage and counter, one per line.
+     *
+     * @return the report.
+     */
+    public static String getReport() {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < stages.length; i++) {
+            sb.append(STAGE_NAMES[i]).append(" ms: ").append(stages[i]).append('\n');
+        }
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            sb.append(COUNTER_NAMES[i]).append(": ").append(getCounter(i)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Clears all the stages and counters.
+     */
+    public static void reset() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i].reset();
+        }
+        synchronized (counters) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = 0;
+            }
+        }
+    }
+}
@@ -29,6 +29,31 @@ public class Note {
         523.25, 554.37, 587.33, 622.25, 659.26, 698.46, 739.99, 783.99, 830.61, 880.0, 932.33, 987.77
     };
 
+    // The MIDI note number of A4.
+    public static final int A4 = 69;
+
+    // The highest MIDI note number; the lowest is 0.
+    public static final int MAX_NOTE = 127;
+
+    // The note names in an octave, from C.
+    private static final String[] PITCH_CLASSES = {
+        "C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"
+    };
+
+    // Names and frequencies of every MIDI note, worked out once so the
+    // display doesn't create Strings or call pow every frame.
+    private static final String[] MIDI_NAMES = new String[MAX_NOTE + 1];
+    private static final double[] MIDI_FREQS = new double[MAX_NOTE + 1];
+
+    private static double reference;   // The frequency of A4 in Hz.
+
+    static {
+        for (int i = 0; i <= MAX_NOTE; i++) {
+            MIDI_NAMES[i] = PITCH_CLASSES[i % 12] + (i / 12 - 1);
+        }
+        setReference(440.0);
+    }
+
     /**
      * Converts note frequency to nearest note name.
      *
@@ -98,4 +123,115 @@ public class Note {
         // The note name isn't in our list.
         throw new IllegalArgumentException("noteName must be in range C3 - B5");
     }
+
+    /**
+     * Returns how many notes there are, so they can be looked up by index
+     * from the lowest.
+     *
+     * @return the number of notes.
+     */
+    public static int getNoteCount() {
+        return NOTE_FREQS.length;
+    }
+
+    /**
+     * Returns the frequency of a note.
+     *
+     * @param index the note, from 0 for the lowest.
+     * @return the frequency in Hz.
+     */
+    public static double getFrequency(int index) {
+        return NOTE_FREQS[index];
+    }
+
+    /**
+     * Sets the frequency of A4 that the other notes are tuned to.  It
+     * only affects the MIDI note methods.
+     *
+     * @param frequency the frequency of A4 in Hz, usually 440.
+     */
+    public static synchronized void setReference(double frequency) {
+        if (frequency <= 0) {
+            throw new IllegalArgumentException("Frequency must be > 0");
+        }
+        for (int i = 0; i <= MAX_NOTE; i++) {
+            MIDI_FREQS[i] = frequency * MathUtils.pow2((i - A4) / 12.0);
+        }
+        reference = frequency;
+    }
+
+    /**
+     * Returns the frequency of A4 that the other notes are tuned to.
+     *
+     * @return the frequency of A4 in Hz.
+     */
+    public static double getReference() {
+        return reference;
+    }
+
+    /**
+     * Finds the nearest MIDI note to a frequency.
+     *
+     * @param frequency the frequency in Hz.
+     * @return the MIDI note number, clamped to 0 - 127.
+     */
+    public static int midiNote(double frequency) {
+        if (frequency < 0) {
+            throw new IllegalArgumentException("Frequency must be > 0");
+        }
+        double note = A4 + 12.0 * MathUtils.log2(frequency / reference);
+        if (note < 0.0) {
+            return 0;
+        } else if (note > MAX_NOTE) {
+            return MAX_NOTE;
+        }
+        return (int)(note + 0.5);
+    }
+
+    /**
+     * Returns how far a frequency is from a note.
+     *
+     * @param midiNote the MIDI note number.
+     * @param frequency the frequency in Hz.
+     * @return the distance in cents, negative if flat.
+     */
+    public static double cents(int midiNote, double frequency) {
+        return 1200.0 * MathUtils.log2(frequency / MIDI_FREQS[midiNote]);
+    }
+
+    /**
+     * Returns the frequency of a note.
+     *
+     * @param midiNote the MIDI note number.
+     * @return the frequency in Hz.
+     */
+    public static double frequency(int midiNote) {
+        return MIDI_FREQS[midiNote];
+    }
+
+    /**
+     * Returns the name of a note.  The same String is returned every time.
+     *
+     * @param midiNote the MIDI note number.
+     * @return the note name and octave, eg. A4, from C-1 to G9.
+     */
+    public static String name(int midiNote) {
+        return MIDI_NAMES[midiNote];
+    }
+
+    /**
+     * Determines whether a frequency is sharp or flat of a note, with the
+     * same 1Hz tolerance as tuningDirection(String, double).
+     *
+     * @param midiNote the MIDI note number.
+     * @param frequency the frequency of the note to test in Hz.
+     * @return -1 if flat, 0 if equal, 1 if sharp
+     */
+    public static int tuningDirection(int midiNote, double frequency) {
+        double target = MIDI_FREQS[midiNote];
+        if (Math.abs(frequency - target) < 1.0) {
+            return 0;
+        }
+        return (frequency < target) ? -1 : 1;
+    }
 }
@@ -61,10 +61,44 @@ public class NoteTest extends TestCase {
         fail("The test case is a prototype.");
     }
 
+    /**
+     * Test of the MIDI note methods, of class net.sharedmemory.tuner.Note.
+     */
+    public void testmidiNote() {
+        System.out.println("midiNote");
+        assertEquals(69, Note.midiNote(441.123));
+        assertEquals(72, Note.midiNote(523.25));
+        assertEquals(68, Note.midiNote(417.96875));
+        assertEquals(0, Note.midiNote(1.0));
+        assertEquals(127, Note.midiNote(20000.0));
+        assertEquals("A4", Note.name(69));
+        assertEquals("C-1", Note.name(0));
+        assertEquals("G9", Note.name(127));
+        assertEquals("G#4", Note.name(Note.midiNote(417.96875)));
+        assertTrue(Math.abs(Note.frequency(60) - 261.6255653005986) < 1e-9);
+        assertTrue(Math.abs(Note.cents(69, 440.0 * 1.0293022366434921) - 50.0) < 1e-9);
+        assertTrue(Math.abs(Note.cents(69, 436.0) + 15.810466497279803) < 1e-9);
+        assertEquals(0, Note.tuningDirection(69, 440.5));
+        assertEquals(-1, Note.tuningDirection(69, 438.0));
+        assertEquals(1, Note.tuningDirection(69, 442.0));
+
+        // The same notes against a higher A4.
+        Note.setReference(442.0);
+        try {
+            assertTrue(Note.getReference() == 442.0);
+            assertEquals(69, Note.midiNote(442.0));
+            assertEquals(0, Note.tuningDirection(69, 442.0));
+            assertEquals(-1, Note.tuningDirection(69, 440.0));
+        } finally {
+            Note.setReference(440.0);
+        }
+    }
+
     public Test suite() {
         TestSuite suite = new TestSuite();
         
         suite.addTest(new NoteTest("testfindNote", new TestMethod(){ public void run(TestCase tc) {((NoteTest) tc).testfindNote();}}));
+        suite.addTest(new NoteTest("testmidiNote", new TestMethod(){ public void run(TestCase tc) {((NoteTest) tc).testmidiNote();}}));
 //        suite.addTest(new NoteTest("testtuningDirection", new TestMethod(){ public void run(TestCase tc) {((NoteTest) tc).testtuningDirection();}}));
         return suite;
     }
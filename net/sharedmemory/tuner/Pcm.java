@@ -0,0 +1,29 @@
+/*
+ * Pcm.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * A utility class for handling raw PCM samples, which are recorded as
+ * 16 bit little-endian mono.
+ *
+ * @author David Keen
+ */
+public class Pcm {
+
+    /**
+     * Converts raw bytes to sample values.
+     *
+     * @param bytes the raw samples, two bytes each.
+     * @param samples the array to hold the sample values.  One sample is
+     * converted for each element, up to half the length of bytes.
+     */
+    public static void decode(byte[] bytes, double[] samples) {
+        int n = Math.min(samples.length, bytes.length / 2);
+        for (int i = 0, j = 0; i < n; i++, j += 2) {
+            samples[i] = (bytes[j] & 0xff) | (bytes[j + 1] << 8);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * PcmSource.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+import java.io.*;
+
+/**
+ * Reads raw PCM samples from an InputStream or an array in memory.
+ * It can run in real time, like a microphone, or as fast as the samples
+ * can be analysed.
+ *
+ * @author David Keen
+ */
+public class PcmSource implements AudioSource {
+    private InputStream in;
+    private int rate;
+    private boolean realTime;
+
+    private OutputStream sink;
+    private byte[] chunk;       // Reused between deliveries.
+
+    /**
+     * Creates a new instance of PcmSource
+     *
+     * @param in the stream of 16 bit little-endian mono samples.
+     * @param rate the sample rate in Hz.
+     * @param realTime true to deliver the samples no faster than they
+     * would be recorded.
+     */
+    public PcmSource(InputStream in, int rate, boolean realTime) {
+        this.in = in;
+        this.rate = rate;
+        this.realTime = realTime;
+    }
+
+    /**
+     * Creates a new instance of PcmSource to read samples from memory.
+     *
+     * @param pcm the 16 bit little-endian mono samples.
+     * @param rate the sample rate in Hz.
+     * @param realTime true to deliver the samples no faster than they
+     * would be recorded.
+     */
+    public PcmSource(byte[] pcm, int rate, boolean realTime) {
+        this(new ByteArrayInputStream(pcm), rate, realTime);
+    }
+
+    public void open(OutputStream sink) throws IOException {
+        this.sink = sink;
+    }
+
+    public boolean deliver(int length) throws IOException, InterruptedException {
+        if (chunk == null || chunk.length < length) {
+            chunk = new byte[length];
+        }
+
+        int n = 0;
+        int read;
+        while (n < length && (read = read(chunk, n, length - n)) > 0) {
+            n += read;
+        }
+        if (n == 0) {
+            return false;
+        }
+        sink.write(chunk, 0, n);
+
+        if (realTime) {
+            // Two bytes per sample.
+            Thread.sleep(1000L * n / (2 * rate));
+        }
+        return n == length;
+    }
+
+    public boolean isRealTime() {
+        return realTime;
+    }
+
+    public void close() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Nothing more we can do.
+        }
+    }
+
+    /**
+     * Reads samples from the stream.
+     *
+     * @param b the array to read into.
+     * @param off where to start in b.
+     * @param len the most bytes to read.
+     * @return the number of bytes read, or -1 at the end of the samples.
+     * @throws IOException if the stream can't be read.
+     */
+    protected int read(byte[] b, int off, int len) throws IOException {
+        return in.read(b, off, len);
+    }
+
+    /**
+     * Returns the sample rate.
+     *
+     * @return the sample rate in Hz.
+     */
+    public int getRate() {
+        return rate;
+    }
+
+    /**
+     * Lets a subclass that reads a header first set the sample rate.
+     *
+     * @param rate the sample rate in Hz.
+     */
+    protected void setRate(int rate) {
+        this.rate = rate;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * PitchDetector.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * Finds the fundamental frequency of a frame of raw samples.
+ * Implementations allocate everything they need up front so analysing
+ * a frame allocates nothing.  They are not thread-safe; each analysis
+ * pipeline needs its own.
+ *
+ * @author David Keen
+ */
+public interface PitchDetector {
+
+    // The detectors Processor.createDetector knows about.
+    int HPS = 0;        // Harmonic Product Spectrum
+    int YIN = 1;
+    int MCLEOD = 2;     // McLeod Pitch Method
+    int GOERTZEL = 3;   // Goertzel filters at the note frequencies
+    int CONSTANT_Q = 4; // Harmonic Product Spectrum of a constant Q transform
+
+    /**
+     * Finds the fundamental frequency of a frame of samples.
+     *
+     * @param samples the raw samples, as many as the detector was made for.
+     * @return the frequency in Hz.
+     */
+    double analyse(byte[] samples);
+
+    /**
+     * Returns the spectrum of the last frame analysed, for display.
+     * The array may be reused by the next call to analyse.
+     *
+     * @return the magnitude spectrum, or null if the detector doesn't
+     * make one.
+     */
+    double[] getSpectrum();
+}
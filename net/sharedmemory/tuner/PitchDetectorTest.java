@@ -0,0 +1,187 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+import java.io.*;
+
+public class PitchDetectorTest extends TestCase {
+
+    private static final int POWER = 11;
+    private static final double[] FREQUENCIES = {82.41, 146.83, 220.0, 440.0, 659.26, 880.0};
+
+    public PitchDetectorTest() {
+    }
+
+    public PitchDetectorTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Test of analyse method, of class net.sharedmemory.tuner.YinDetector.
+     */
+    public void testYin() throws Exception {
+        System.out.println("YIN");
+        check(new YinDetector(POWER, TunerMIDlet.RATE));
+    }
+
+    /**
+     * YIN must not give a negative frequency just below MIN_HZ, where the
+     * dip is cut off at the longest period, and must find nothing in
+     * silence or a constant offset.
+     */
+    public void testYinEdges() throws Exception {
+        System.out.println("YIN edges");
+        for (int power = 10; power <= 12; power++) {
+            PitchDetector instance = new YinDetector(power, TunerMIDlet.RATE);
+            for (double frequency = 34.0; frequency < Processor.MIN_HZ; frequency += 0.5) {
+                double result = instance.analyse(signal(frequency, 1 << power));
+                assertTrue("expected " + frequency + " got " + result, result >= 0.0);
+            }
+            byte[] frame = new byte[1 << power];
+            assertTrue(instance.analyse(frame) == 0.0);
+            for (int i = 0; i < frame.length; i += 2) {
+                frame[i + 1] = 0x27;
+            }
+            assertTrue(instance.analyse(frame) == 0.0);
+        }
+
+        // Only a true minimum or maximum is refined.
+        double[] y = {3.0, 2.0, 1.0, 0.5};
+        assertTrue(Autocorrelation.interpolate(y, 2) == 2.0);
+        y[3] = 2.0;
+        assertTrue(Math.abs(Autocorrelation.interpolate(y, 2) - 2.0) <= 0.5);
+    }
+
+    /**
+     * Test of analyse method, of class net.sharedmemory.tuner.McLeodDetector.
+     */
+    public void testMcLeod() throws Exception {
+        System.out.println("McLeod");
+        check(new McLeodDetector(POWER, TunerMIDlet.RATE));
+    }
+
+    /**
+     * Test of analyse method, of class net.sharedmemory.tuner.GoertzelDetector.
+     * The filters only cover the notes, so the tones are in tune or close.
+     */
+    public void testGoertzel() throws Exception {
+        System.out.println("Goertzel");
+        PitchDetector instance = new GoertzelDetector(12, TunerMIDlet.RATE);
+        double[] frequencies = {130.81, 221.5, 329.63, 436.0, 659.26, 987.77};
+        for (int i = 0; i < frequencies.length; i++) {
+            double frequency = frequencies[i];
+            double result = instance.analyse(signal(frequency, 1 << 12));
+            assertTrue("expected " + frequency + " got " + result, Math.abs(result - frequency) < frequency * 0.003);
+        }
+    }
+
+    /**
+     * Tones below the bank, whose harmonics fall between the filters, must
+     * still give a frequency near a note rather than one walked off below
+     * 0 Hz.
+     */
+    public void testGoertzelEdges() throws Exception {
+        System.out.println("Goertzel edges");
+        for (int power = 10; power <= 12; power++) {
+            PitchDetector instance = new GoertzelDetector(power, TunerMIDlet.RATE);
+            double bin = 2.0 * TunerMIDlet.RATE / (1 << power);
+            double lowest = Note.getFrequency(0) / 1.03 - bin;
+            for (double frequency = 30.0; frequency < Note.getFrequency(0); frequency += 0.5) {
+                double result = instance.analyse(signal(frequency, 1 << power));
+                assertTrue("expected over " + lowest + " got " + result, result > lowest);
+            }
+            assertTrue(instance.analyse(new byte[1 << power]) == 0.0);
+        }
+    }
+
+    /**
+     * Test of analyse method, of class
+     * net.sharedmemory.tuner.ConstantQDetector.  It should find the low
+     * notes the linear spectrum can't on the same frame.
+     */
+    public void testConstantQ() throws Exception {
+        System.out.println("ConstantQ");
+        ConstantQDetector instance = new ConstantQDetector(12, TunerMIDlet.RATE, Processor.decimation(TunerMIDlet.RATE));
+        double[] frequencies = {55.0, 82.41, 110.0, 196.0, 440.0, 659.26};
+        for (int i = 0; i < frequencies.length; i++) {
+            double frequency = frequencies[i];
+            double result = instance.analyse(signal(frequency, 1 << 12));
+            assertTrue("expected " + frequency + " got " + result, Math.abs(result - frequency) < frequency * 0.003);
+        }
+
+        // The bins of the notes line up with the notes.
+        ConstantQ cq = instance.getTransform();
+        assertEquals(ConstantQDetector.BINS_PER_SEMITONE, cq.getBinsPerSemitone());
+        assertTrue(Math.abs(cq.frequency(cq.bin(Note.A4)) - 440.0) < 1e-9);
+        instance.analyse(signal(Note.frequency(Note.A4), 1 << 12));
+        double[] spectrum = instance.getSpectrum();
+        int peak = 0;
+        for (int k = 0; k < cq.bin(Note.A4 + 6); k++) {
+            if (spectrum[k] > spectrum[peak]) {
+                peak = k;
+            }
+        }
+        assertEquals(cq.bin(Note.A4), peak);
+    }
+
+    /**
+     * The constant Q detector must not fail at the bottom of its range,
+     * where the peak is next to the lowest bin, and must find nothing in
+     * silence.
+     */
+    public void testConstantQEdges() throws Exception {
+        System.out.println("ConstantQ edges");
+        for (int power = 12; power <= 13; power++) {
+            PitchDetector instance = Processor.createDetector(PitchDetector.CONSTANT_Q, power, TunerMIDlet.RATE, false);
+            for (double frequency = 46.5; frequency <= 50.0; frequency += 0.5) {
+                double result = instance.analyse(signal(frequency, 1 << power));
+                assertTrue("expected " + frequency + " got " + result, result >= 0.0);
+            }
+            double result = instance.analyse(signal(49.0, 1 << power));
+            assertEquals(Note.midiNote(49.0), Note.midiNote(result));
+            assertTrue(instance.analyse(new byte[1 << power]) == 0.0);
+        }
+    }
+
+    /**
+     * The time domain detectors must be within a few cents on short,
+     * noisy frames, from the bottom string of a guitar upwards.
+     */
+    private void check(PitchDetector instance) throws Exception {
+        for (int i = 0; i < FREQUENCIES.length; i++) {
+            double frequency = FREQUENCIES[i];
+            double result = instance.analyse(signal(frequency, 1 << POWER));
+            assertTrue("expected " + frequency + " got " + result, Math.abs(result - frequency) < frequency * 0.003);
+        }
+    }
+
+    /**
+     * Creates a frame of a harmonic rich tone with a little noise, as
+     * 16 bit samples.
+     */
+    private byte[] signal(double frequency, int length) throws Exception {
+        SyntheticSource source = new SyntheticSource(frequency, TunerMIDlet.RATE, false);
+        source.setNoise(0.1);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        source.open(frame);
+        source.deliver(length);
+        return frame.toByteArray();
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new PitchDetectorTest("testYin", new TestMethod(){ public void run(TestCase tc) throws Throwable {((PitchDetectorTest) tc).testYin();}}));
+        suite.addTest(new PitchDetectorTest("testYinEdges", new TestMethod(){ public void run(TestCase tc) throws Throwable {((PitchDetectorTest) tc).testYinEdges();}}));
+        suite.addTest(new PitchDetectorTest("testMcLeod", new TestMethod(){ public void run(TestCase tc) throws Throwable {((PitchDetectorTest) tc).testMcLeod();}}));
+        suite.addTest(new PitchDetectorTest("testGoertzel", new TestMethod(){ public void run(TestCase tc) throws Throwable {((PitchDetectorTest) tc).testGoertzel();}}));
+        suite.addTest(new PitchDetectorTest("testGoertzelEdges", new TestMethod(){ public void run(TestCase tc) throws Throwable {((PitchDetectorTest) tc).testGoertzelEdges();}}));
+        suite.addTest(new PitchDetectorTest("testConstantQ", new TestMethod(){ public void run(TestCase tc) throws Throwable {((PitchDetectorTest) tc).testConstantQ();}}));
+        suite.addTest(new PitchDetectorTest("testConstantQEdges", new TestMethod(){ public void run(TestCase tc) throws Throwable {((PitchDetectorTest) tc).testConstantQEdges();}}));
+        return suite;
+    }
+}
@@ -18,7 +18,30 @@ public class PreferencesForm extends Form {
     // Items
     private static ChoiceGroup resolution;
     private static final String[] resolutionList = {
-        "Low (Faster)", "High (Slower)"};
+        "Low (Faster)", "High (Slower)", "Adaptive"};
+    private static ChoiceGroup detector;
+    private static final String[] detectorList = {
+        "Spectrum (HPS)", "YIN", "McLeod (MPM)", "Note filters", "Constant-Q"};
+    private static ChoiceGroup updateRate;
+    private static final String[] updateRateList = {
+        "Normal", "Fast (More CPU)"};
+    private static ChoiceGroup arithmetic;
+    private static final String[] arithmeticList = {
+        "Floating point", "Fixed point (No FPU)"};
+    private static ChoiceGroup capture;
+    private static final String[] captureList = {
+        "Per frame", "Continuous"};
+    private static ChoiceGroup policy;
+    private static final String[] policyList = {
+        "Wait", "Drop oldest", "Latest only", "Coalesce"};
+    private static ChoiceGroup screenRate;
+    private static final String[] screenRateList = {
+        "Up to 10/s", "Up to 25/s", "Every change"};
+    private static final int[] screenRates = {10, 25, 0};
+    private static ChoiceGroup reference;
+    private static final String[] referenceList = {
+        "A4 = 440Hz", "A4 = 442Hz", "A4 = 432Hz", "A4 = 415Hz (Baroque)"};
+    private static final double[] referenceFreqs = {440.0, 442.0, 432.0, 415.0};
 
     // Commands
     private Command cancelCommand;
@@ -35,8 +58,22 @@ public class PreferencesForm extends Form {
         this.controller = controller;
 
         // Set up items
+        detector = new ChoiceGroup("Detector", ChoiceGroup.EXCLUSIVE, detectorList, null);
+        append(detector);
         resolution = new ChoiceGroup("Resolution", ChoiceGroup.EXCLUSIVE, resolutionList, null);
         append(resolution);
+        updateRate = new ChoiceGroup("Update rate", ChoiceGroup.EXCLUSIVE, updateRateList, null);
+        append(updateRate);
+        arithmetic = new ChoiceGroup("Arithmetic", ChoiceGroup.EXCLUSIVE, arithmeticList, null);
+        append(arithmetic);
+        capture = new ChoiceGroup("Capture", ChoiceGroup.EXCLUSIVE, captureList, null);
+        append(capture);
+        policy = new ChoiceGroup("When behind", ChoiceGroup.EXCLUSIVE, policyList, null);
+        append(policy);
+        screenRate = new ChoiceGroup("Screen updates", ChoiceGroup.EXCLUSIVE, screenRateList, null);
+        append(screenRate);
+        reference = new ChoiceGroup("Reference", ChoiceGroup.EXCLUSIVE, referenceList, null);
+        append(reference);
 
         // Set up commands
         cancelCommand = new Command("Cancel", Command.CANCEL, 0);
@@ -53,21 +90,82 @@ public class PreferencesForm extends Form {
      * Saves the user preferences for this session.
      */
     public void savePreferences() {
-        if (resolution.getSelectedIndex() == 0) {
-            controller.setPower(12);
+        controller.setDetector(detector.getSelectedIndex());
+
+        // YIN and McLeod need much shorter frames.
+        int power = basePower(controller.getDetector());
+        if (resolution.getSelectedIndex() == 1) {
+            controller.setPower(power + 1);
         } else {
-            controller.setPower(13);
+            controller.setPower(power);
         }
+        controller.setAdaptive(resolution.getSelectedIndex() == 2);
+
+        // Fast updates analyse a new window every quarter window.
+        if (updateRate.getSelectedIndex() == 0) {
+            controller.setOverlap(1);
+        } else {
+            controller.setOverlap(4);
+        }
+
+        controller.setFixedPoint(arithmetic.getSelectedIndex() == 1);
+        controller.setStreaming(capture.getSelectedIndex() == 1);
+        controller.setPolicy(policy.getSelectedIndex());
+        controller.setMaxFps(screenRates[screenRate.getSelectedIndex()]);
+        Note.setReference(referenceFreqs[reference.getSelectedIndex()]);
     }
 
     /**
      * Sets the form to reflect the current user preference values.
      */
     private void initForm() {
-       if (controller.getPower() == 12) {
+       detector.setSelectedIndex(controller.getDetector(), true);
+       if (controller.isAdaptive()) {
+           resolution.setSelectedIndex(2, true);
+       } else if (controller.getPower() == basePower(controller.getDetector())) {
            resolution.setSelectedIndex(0, true);
        } else {
            resolution.setSelectedIndex(1, true);
        }
+       if (controller.getOverlap() == 1) {
+           updateRate.setSelectedIndex(0, true);
+       } else {
+           updateRate.setSelectedIndex(1, true);
+       }
+       if (controller.isFixedPoint()) {
+           arithmetic.setSelectedIndex(1, true);
+       } else {
+           arithmetic.setSelectedIndex(0, true);
+       }
+       if (controller.isStreaming()) {
+           capture.setSelectedIndex(1, true);
+       } else {
+           capture.setSelectedIndex(0, true);
+       }
+       policy.setSelectedIndex(controller.getPolicy(), true);
+       for (int i = 0; i < screenRates.length; i++) {
+           if (screenRates[i] == controller.getMaxFps()) {
+               screenRate.setSelectedIndex(i, true);
+           }
+       }
+       reference.setSelectedIndex(0, true);
+       for (int i = 0; i < referenceFreqs.length; i++) {
+           if (referenceFreqs[i] == Note.getReference()) {
+               reference.setSelectedIndex(i, true);
+           }
+       }
+    }
+
+    /**
+     * Returns the power of two frame length for low resolution.
+     *
+     * @param detector one of the PitchDetector constants.
+     * @return the power for low resolution; high is one more.
+     */
+    private static int basePower(int detector) {
+        if (detector == PitchDetector.YIN || detector == PitchDetector.MCLEOD) {
+            return 10;
+        }
+        return 12;
     }
 }
@@ -16,102 +16,243 @@ public class Processor implements Runnable {
     public static final double MIN_HZ = 50.0;
     public static final double MAX_HZ = 990.0;
 
-    private double resolution;  // The resolution of the FFT "bins".
-    private int minIdx;
-    private int maxIdx;
+    // The adaptive frame sizes: the low and high resolutions.
+    private static final int ADAPTIVE_SIZES = 2;
 
     private Buffer buffer;      // The shared input buffer.
     private TunerMIDlet controller;
-    private TunerCanvas tunerCanvas;
+    private RenderScheduler renderer;
 
-    private FFT fft;
-    private double[] xr;        // Array of real parts.
-    private double[] xi;        // Array of complex parts.
+    private PitchDetector detector;
+
+    private int hopLength;      // New samples in each frame from the buffer.
+    private byte[] window;      // The latest samples when windows overlap.
+    private int hops;           // Hops in the window so far, until it's full.
+    private int expected;       // The sequence number of the next frame.
+
+    private FrameSizer sizer;   // Chooses the frame size, or null.
+    private int minPower;       // The smallest adaptive frame size.
+    private PitchDetector[] detectors;  // A detector for each size.
+    private byte[][] frames;    // The latest samples for each size.
 
     private double[] freq;      // The output buffer for steady-state filter.
+    private long captured;      // When (ms) the latest frame was committed.
 
     /**
      * Creates an instance of the Procesor class.
      *
      * @param buffer the shared sample buffer.
      * @param controller the controlling MIDlet.
-     * @param tunerCanvas the tuner GUI canvas.
+     * @param renderer shows the results on the tuner GUI canvas.
      */
-    public Processor(Buffer buffer, TunerMIDlet controller, TunerCanvas tunerCanvas) {
+    public Processor(Buffer buffer, TunerMIDlet controller, RenderScheduler renderer) {
         this.buffer = buffer;
         this.controller = controller;
-        this.tunerCanvas = tunerCanvas;
+        this.renderer = renderer;
 
-        // Convert the frequency range into FFT array indices to scan.
-        resolution = (double)TunerMIDlet.RATE / (double)controller.getSampleLength();
-        minIdx = (int)(MIN_HZ / resolution);
-        maxIdx = (int)(MAX_HZ / resolution);
+        // With overlapping windows each frame from the buffer is a hop
+        // that is slid into a window of the full sample length.
+        hopLength = controller.getHopLength();
+        if (controller.isAdaptive()) {
+            // Every size has its own detector from the start, and the
+            // window holds enough samples for the largest, so the size
+            // can change between any two hops.
+            minPower = controller.getPower();
+            detectors = new PitchDetector[ADAPTIVE_SIZES];
+            frames = new byte[ADAPTIVE_SIZES][];
+            for (int i = 0; i < ADAPTIVE_SIZES; i++) {
+                detectors[i] = createDetector(controller.getDetector(), minPower + i, TunerMIDlet.RATE, controller.isFixedPoint());
+                frames[i] = new byte[1 << (minPower + i)];
+            }
+            detector = detectors[0];
+            window = frames[ADAPTIVE_SIZES - 1];
 
-        fft = new FFT(controller.getPower());
-        xr = new double[controller.getSampleLength()];
-        xi = new double[controller.getSampleLength()];
+            // Leave a quarter of each hop for the rest of the pipeline.
+            // The hop is in bytes, two to each sample, as is every frame
+            // the sizer chooses between.
+            long budget = 750L * (hopLength / 2) / TunerMIDlet.RATE;
+            sizer = new FrameSizer(minPower, minPower + ADAPTIVE_SIZES - 1, TunerMIDlet.RATE, budget);
+        } else {
+            detector = createDetector(controller.getDetector(), controller.getPower(), TunerMIDlet.RATE, controller.isFixedPoint());
+            if (hopLength < controller.getSampleLength()) {
+                window = new byte[controller.getSampleLength()];
+            }
+        }
 
         freq = new double[2];
     }
 
     public void run() {
+        int windows = 0;        // Windows analysed since the last check.
+
         while (controller.okToRun) {
 
-            // Process the first sample
-            byte[] samples = buffer.remove();
-            fft.populateArrays(xr, xi, samples);
-            fft.doFFT(xr, xi, false);
+            // Process the next window
+            double frequency = analyseNext();
 
-            // Create the original frequency spectrum
-            double[] spectrum = fft.createSpectrum(xr, xi);
+            // Stop if we were interrupted.  Also wait until an overlapping
+            // window has been filled.
+            if (frequency < 0) {
+                continue;
+            }
+            freq[0] = freq[1];
+            freq[1] = frequency;
+            Metrics.count(Metrics.PROCESSED, 1);
 
-            // Downsample x2
-            double[] times2 = fft.downSample(spectrum, 2);
+            // Back-to-back windows are checked in pairs but an overlapping
+            // window is checked against the one before, so we get a new
+            // result every hop.
+            if (++windows < 2) {
+                continue;
+            }
+            windows = (window == null) ? 0 : 1;
 
-            // Downsample x3
-            double[] times3 = fft.downSample(spectrum, 3);
+            // Check if the two samples are close enough (steady-state filter).
+            if (Math.abs(freq[1] - freq[0]) < 10.0) {
+                double avg = (freq[0] + freq[1]) / 2;
 
-            // Calculate the Harmonic Product Spectrum
-            int max = fft.HPSMax(spectrum, times2, times3, minIdx, maxIdx);
+                // Determine the note.
+                long start = System.currentTimeMillis();
+                int note = Note.midiNote(avg);
+                int tuningDirection = Note.tuningDirection(note, avg);
+                Metrics.time(Metrics.NOTE, start);
 
-            // Convert the index to frequency.
-            freq[0] = fft.indexToFrequency(TunerMIDlet.RATE, spectrum.length, max);
+                // Display the results.
+                renderer.update(note, avg, tuningDirection, captured, detector.getSpectrum(),
+                        detector instanceof ConstantQDetector);
 
-            // Process the second sample
-            samples = buffer.remove();
-            fft.populateArrays(xr, xi, samples);
-            fft.doFFT(xr, xi, false);
+                if (sizer != null) {
+                    sizer.heard(avg);
+                }
+            } else {
+                // A pair of back-to-back windows is rejected together.
+                Metrics.count(Metrics.REJECTED, (window == null) ? 2 : 1);
+            }
+        }
+    }
 
-            // Create the original frequency spectrum
-            spectrum = fft.createSpectrum(xr, xi);
+    /**
+     * Takes the next frame from the shared buffer and finds the pitch of
+     * the latest window.  The frame is given back to the buffer as soon as
+     * it has been read.
+     *
+     * @return the frequency in Hz, or -1 if the thread was interrupted or
+     * the window isn't full yet.
+     */
+    private double analyseNext() {
+        boolean coalesce = (buffer.getPolicy() == Buffer.COALESCE);
 
-            // Downsample x2
-            times2 = fft.downSample(spectrum, 2);
+        // Without overlap only the newest of the frames waiting matters.
+        if (coalesce && window == null) {
+            buffer.skip(1);
+        }
 
-            // Downsample x3
-            times3 = fft.downSample(spectrum, 3);
+        byte[] samples = buffer.remove();
+        if (samples == null) {
+            return -1;
+        }
+        captured = buffer.getTimestamp();
+        Metrics.time(Metrics.HANDOFF, captured);
 
-            // Calculate the Harmonic Product Spectrum
-            max = fft.HPSMax(spectrum, times2, times3, minIdx, maxIdx);
+        // Without overlap the frame is the window.
+        if (window == null) {
+            long start = System.currentTimeMillis();
+            double frequency = detector.analyse(samples);
+            Metrics.time(Metrics.ANALYSIS, start);
+            buffer.release();
+            return frequency;
+        }
 
-            // Convert the index to frequency.
-            freq[1] = fft.indexToFrequency(TunerMIDlet.RATE, spectrum.length, max);
+        // Slide the window along by one hop.  When coalescing every hop
+        // waiting is slid in and the window is analysed once.
+        int merged = 0;
+        while (true) {
+            // A hop that was dropped or shed would leave the window
+            // spliced across the gap, so it starts filling again.
+            if (buffer.getSequence() != expected) {
+                hops = 0;
+            }
+            expected = buffer.getSequence() + 1;
 
-            // Check if the two samples are close enough (steady-state filter).
-            if (Math.abs(freq[1] - freq[0]) < 10.0) {
-                double avg = (freq[0] + freq[1]) / 2;
+            System.arraycopy(window, hopLength, window, 0, window.length - hopLength);
+            System.arraycopy(samples, 0, window, window.length - hopLength, hopLength);
+            buffer.release();
+            if (hops < window.length / hopLength) {
+                hops++;
+            }
+            if (!coalesce || buffer.available() == 0) {
+                break;
+            }
+            samples = buffer.remove();
+            captured = buffer.getTimestamp();
+            merged++;
+        }
+        if (merged > 0) {
+            Metrics.count(Metrics.COALESCED, merged);
+        }
 
-                // Determine the note name.
-                String noteName = Note.findNote(avg);
-                int tuningDirection = Note.tuningDirection(noteName, avg);
+        // The latest samples, as many as the size chosen takes.
+        byte[] frame = window;
+        if (sizer != null) {
+            int size = sizer.getPower() - minPower;
+            detector = detectors[size];
+            frame = frames[size];
+        }
+        if (hops < frame.length / hopLength) {
+            return -1;
+        }
+        if (frame != window) {
+            System.arraycopy(window, window.length - frame.length, frame, 0, frame.length);
+        }
 
-                // Display the results.
-                tunerCanvas.setNoteName(noteName);
-                tunerCanvas.setFrequency(avg);
-                tunerCanvas.setSpectrum(spectrum);
-                tunerCanvas.setAccuracy(tuningDirection);
-                tunerCanvas.repaint();
-            }
+        long start = System.currentTimeMillis();
+        double frequency = detector.analyse(frame);
+        Metrics.time(Metrics.ANALYSIS, start);
+        if (sizer != null) {
+            sizer.timed(System.currentTimeMillis() - start);
+        }
+        return frequency;
+    }
+
+    /**
+     * Creates a pitch detector with all the memory it needs.
+     *
+     * @param type which detector, one of the PitchDetector constants.
+     * @param power there are 2 raised to this power bytes in each frame.
+     * @param rate the sample rate in Hz.
+     * @param fixedPoint true to do the FFT in integer arithmetic, where
+     * the detector supports it.
+     * @return the new PitchDetector.
+     */
+    public static PitchDetector createDetector(int type, int power, int rate, boolean fixedPoint) {
+        switch (type) {
+            case PitchDetector.YIN:
+                return new YinDetector(power, rate);
+            case PitchDetector.MCLEOD:
+                return new McLeodDetector(power, rate);
+            case PitchDetector.GOERTZEL:
+                return new GoertzelDetector(power, rate);
+            case PitchDetector.CONSTANT_Q:
+                return new ConstantQDetector(power, rate, decimation(rate));
+            default:
+                return new Workspace(power, rate, decimation(rate), fixedPoint);
+        }
+    }
+
+    /**
+     * Returns how far the sample rate can be divided before the FFT for
+     * the Harmonic Product Spectrum.  It only needs the band up to the
+     * third harmonic of MAX_HZ, so the rate is halved for as long as that
+     * stays below the Nyquist frequency.  RATE is too low to halve.
+     *
+     * @param rate the sample rate in Hz.
+     * @return the decimation factor, a power of 2.
+     */
+    public static int decimation(int rate) {
+        int decimation = 1;
+        while (rate / (4.0 * decimation) > HarmonicProductSpectrum.DEFAULT_HARMONICS * MAX_HZ) {
+            decimation *= 2;
         }
+        return decimation;
     }
 }
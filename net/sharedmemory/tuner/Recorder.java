@@ -5,84 +5,130 @@
 
 package net.sharedmemory.tuner;
 
-import java.io.*;
-import javax.microedition.media.*;
-import javax.microedition.media.control.RecordControl;
-
 /**
- * Records raw PCM samples into a shared buffer.
+ * Records raw PCM samples from an AudioSource into a shared buffer.
 
  * @author David Keen
  */
 public class Recorder implements Runnable {
-    private int recordingTime;
+    private int frameLength;
 
     private Buffer buffer;
     private TunerMIDlet controller;
 
-    private Player capturePlayer;
-    private RecordControl recordControl;
-    private ByteArrayOutputStream bos;
+    private AudioSource source;
+    private FrameOutputStream frameStream;  // Slices the samples into frames.
+    private volatile boolean stopped;
 
     /**
-     * Creates a new instance of Recorder
+     * Creates a new instance of Recorder that records from the microphone.
      *
      * @param buffer the shared Buffer.
      * @param controller the controlling TunerMIDlet instance.
      */
     public Recorder(Buffer buffer, TunerMIDlet controller) {
+        this(buffer, null, controller.getHopLength(), controller);
+
+        try {
+            source = new CaptureSource(TunerMIDlet.RATE, controller.isStreaming());
+            frameStream = new FrameOutputStream(buffer, frameLength, blocks(source, buffer));
+        } catch (Exception e) {
+            // No point continuing without a capturePlayer or recordControl so show fatal error.
+            controller.showFatalError(e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a new instance of Recorder that records from any AudioSource.
+     * Without a controller it runs until the source runs out or it is
+     * stopped, so the pipeline can be run without a MIDlet.
+     *
+     * @param buffer the shared Buffer.
+     * @param source where to get the samples from.
+     * @param frameLength the number of bytes in each frame, two to a sample.
+     * @param controller the controlling TunerMIDlet instance, or null.
+     */
+    public Recorder(Buffer buffer, AudioSource source, int frameLength, TunerMIDlet controller) {
         this.buffer = buffer;
+        this.source = source;
+        this.frameLength = frameLength;
         this.controller = controller;
 
-        // Buffer filling time (s) is FFT length / sample rate (* 1000ms).
-        recordingTime = 1000 * controller.getSampleLength() / TunerMIDlet.RATE;
-
-        if (capturePlayer == null) {
-            try {
-                capturePlayer = Manager.createPlayer(
-                        "capture://audio?encoding=pcm&rate=" + TunerMIDlet.RATE);
-
-                capturePlayer.realize();
-                recordControl = (RecordControl)capturePlayer.getControl("RecordControl");
-
-                // Create the internal buffer for the recording
-                bos = new ByteArrayOutputStream(controller.getSampleLength());
-            } catch (Exception e) {
-                // No point continuing without a capturePlayer or recordControl so show fatal error.
-                controller.showError(e.getMessage(), new FatalForm(controller));
-            }
+        // A real time source can't wait for the Processor to catch up.
+        if (source != null) {
+            frameStream = new FrameOutputStream(buffer, frameLength, blocks(source, buffer));
         }
     }
 
+    /**
+     * Creates a new instance of Recorder that writes to a FrameOutputStream
+     * made elsewhere, so the owner of the buffer can hear about each frame.
+     *
+     * @param frameStream where to write the samples.
+     * @param source where to get the samples from.
+     * @param frameLength the number of bytes in each frame, two to a sample.
+     */
+    public Recorder(FrameOutputStream frameStream, AudioSource source, int frameLength) {
+        this.frameStream = frameStream;
+        this.source = source;
+        this.frameLength = frameLength;
+    }
+
     public void run() {
-        while (controller.okToRun) {
-            try {
-                recordControl.setRecordStream(bos);
-                capturePlayer.start();
-                recordControl.startRecord();
-                Thread.sleep(recordingTime);
-                recordControl.stopRecord();
-                recordControl.commit();
-                bos.flush();
-
-                // Insert the recorded data into the shared buffer.
-                buffer.insert(bos.toByteArray());
-
-                // Reset the ByteArrayOutputStream for reuse.
-                bos.reset();
-            } catch (InterruptedException e) {
-
-                // If Thread was interrupted, we just want to terminate.
-                // Close any open Players
-                // Do we need to do this if we set the threads to null
-                // from TunerMIDlet?
-                if (capturePlayer != null) {
-                    capturePlayer.close();
+        if (source == null) {
+            return;
+        }
+
+        try {
+            source.open(frameStream);
+            while (isRunning()) {
+                // The source writes the samples to the frame stream.
+                long start = System.currentTimeMillis();
+                if (!source.deliver(frameLength)) {
+                    break;
                 }
-            } catch (Exception e) {
-                controller.showError(e.getMessage(), new FatalForm(controller));
+                Metrics.time(Metrics.CAPTURE, start);
+            }
+        } catch (InterruptedException e) {
+            // If Thread was interrupted, we just want to terminate.
+        } catch (Exception e) {
+            if (controller != null) {
+                controller.showFatalError(e.getMessage());
+            } else {
+                throw new RuntimeException(e.toString());
             }
+        } finally {
+            // Close any open Players
+            source.close();
         }
     }
 
+    /**
+     * Tells the Recorder to stop after the current frame.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Returns how many samples have been dropped because the Processor
+     * fell behind a real time source.
+     *
+     * @return the number of samples dropped.
+     */
+    public long getDroppedSamples() {
+        return frameStream == null ? 0 : frameStream.getDroppedSamples();
+    }
+
+    /**
+     * Decides whether to wait for room in the buffer.  A real time source
+     * can't be held up, and the other policies shed frames instead.
+     */
+    private static boolean blocks(AudioSource source, Buffer buffer) {
+        return !source.isRealTime() && buffer.getPolicy() == Buffer.BLOCK;
+    }
+
+    private boolean isRunning() {
+        return !stopped && (controller == null || controller.okToRun);
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * RenderScheduler.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * Decides when TunerCanvas is repainted.  Each result from the analysis
+ * is handed over in one go, and the canvas is only repainted if it would
+ * show something different, and no more often than the frame rate set.
+ * Results that come in faster than that are merged, so only the latest
+ * is painted; the analysis never waits for the screen.
+ *
+ * @author David Keen
+ */
+public class RenderScheduler implements Runnable {
+    private TunerCanvas canvas;
+    private long interval;      // The least ms between repaints, or 0.
+
+    private boolean dirty;      // A repaint is wanted.
+    private boolean stopped;
+    private long painted;       // When (ms) the last repaint was asked for.
+
+    /**
+     * Creates a new instance of RenderScheduler.
+     *
+     * @param canvas the canvas to repaint.
+     * @param maxFps the most repaints a second, or 0 for no limit.
+     */
+    public RenderScheduler(TunerCanvas canvas, int maxFps) {
+        this.canvas = canvas;
+        interval = (maxFps > 0) ? 1000 / maxFps : 0;
+    }
+
+    /**
+     * Hands over a result to show.  It returns straight away; the repaint
+     * happens on the scheduler's thread.
+     *
+     * @param note the MIDI note.
+     * @param frequency the frequency in Hz.
+     * @param accuracy less than 0 for flat, 0 for in tune, more than 0 for
+     * sharp.
+     * @param captured when the frame behind the result was recorded.
+     * @param spectrum the spectrum to draw, or null to leave it.
+     * @param logarithmic true if the spectrum bins are spaced in pitch.
+     */
+    public void update(int note, double frequency, int accuracy, long captured, double[] spectrum, boolean logarithmic) {
+        boolean changed = canvas.getState().set(note, frequency, accuracy, captured);
+        if (spectrum != null && canvas.setSpectrum(spectrum, logarithmic)) {
+            changed = true;
+        }
+        if (changed) {
+            request();
+        } else {
+            Metrics.count(Metrics.UNPAINTED, 1);
+        }
+    }
+
+    /**
+     * Repaints the canvas when asked to, until stopped.
+     */
+    public void run() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (!stopped && !dirty) {
+                        wait();
+                    }
+                    if (stopped) {
+                        return;
+                    }
+
+                    // Hold the repaint back until the interval is up; more
+                    // results may come in and be merged with it meanwhile.
+                    long wait = painted + interval - System.currentTimeMillis();
+                    if (wait > 0) {
+                        wait(wait);
+                        continue;
+                    }
+                    dirty = false;
+                    painted = System.currentTimeMillis();
+                }
+                canvas.repaint();
+            }
+        } catch (InterruptedException e) {
+            // Stop.
+        }
+    }
+
+    /**
+     * Tells the scheduler's thread to stop.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        notify();
+    }
+
+    /**
+     * Asks for a repaint, merging it with one already waiting.
+     */
+    private synchronized void request() {
+        if (dirty) {
+            Metrics.count(Metrics.UNPAINTED, 1);
+        }
+        dirty = true;
+        notify();
+    }
+}
@@ -0,0 +1,82 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+
+public class RenderSchedulerTest extends TestCase {
+
+    public RenderSchedulerTest() {
+    }
+
+    public RenderSchedulerTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+        Metrics.reset();
+    }
+
+    public void tearDown() {
+        Metrics.reset();
+    }
+
+    /**
+     * Test of set and copyTo methods, of class net.sharedmemory.tuner.TunerState.
+     */
+    public void testset() {
+        System.out.println("set");
+        TunerState instance = new TunerState();
+        TunerState shown = new TunerState();
+        assertEquals("-", instance.getNoteName());
+        assertEquals("0.0", instance.getFrequency());
+
+        assertTrue(instance.set(Note.A4, 440.01, 0, 1000));
+        // Too small a change to see.
+        assertTrue(!instance.set(Note.A4, 440.04, 0, 2000));
+        assertTrue(instance.set(Note.A4, 440.06, 0, 3000));
+        assertTrue(instance.set(Note.A4, 440.06, 1, 4000));
+
+        // The capture time is only handed over once.
+        instance.copyTo(shown);
+        assertEquals("A4", shown.getNoteName());
+        assertEquals("440.1", shown.getFrequency());
+        assertEquals(1, shown.getAccuracy());
+        assertEquals(4000, shown.getCaptured());
+        instance.copyTo(shown);
+        assertEquals(0, shown.getCaptured());
+    }
+
+    /**
+     * Test of update method, of class net.sharedmemory.tuner.RenderScheduler.
+     * Results that change nothing, or come in before the last was painted,
+     * are counted as unpainted.
+     */
+    public void testupdate() {
+        System.out.println("update");
+        TunerCanvas canvas = new TunerCanvas();
+        RenderScheduler instance = new RenderScheduler(canvas, 10);
+        double[] spectrum = new double[1024];
+
+        instance.update(Note.A4, 440.0, 0, 1000, spectrum, false);
+        assertEquals(0, Metrics.getCounter(Metrics.UNPAINTED));
+        instance.update(Note.A4, 440.0, 0, 2000, spectrum, false);
+        assertEquals(1, Metrics.getCounter(Metrics.UNPAINTED));
+
+        // The scheduler's thread isn't running, so nothing is painted and
+        // the next change merges with the one waiting.
+        spectrum[440] = 1.0;
+        instance.update(Note.A4, 440.0, 0, 3000, spectrum, false);
+        assertEquals(2, Metrics.getCounter(Metrics.UNPAINTED));
+        instance.update(Note.A4 + 1, 466.2, 0, 4000, null, false);
+        assertEquals(3, Metrics.getCounter(Metrics.UNPAINTED));
+        TunerState shown = new TunerState();
+        canvas.getState().copyTo(shown);
+        assertEquals("A#4", shown.getNoteName());
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new RenderSchedulerTest("testset", new TestMethod(){ public void run(TestCase tc) {((RenderSchedulerTest) tc).testset();}}));
+        suite.addTest(new RenderSchedulerTest("testupdate", new TestMethod(){ public void run(TestCase tc) {((RenderSchedulerTest) tc).testupdate();}}));
+        return suite;
+    }
+}
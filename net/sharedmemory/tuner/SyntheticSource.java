@@ -0,0 +1,130 @@
+/*
+ * SyntheticSource.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+import java.io.*;
+import java.util.Random;
+
+/**
+ * Generates a test tone: a fundamental with falling harmonics and some
+ * noise.  It can run in real time or as fast as the samples can be
+ * analysed, so the whole pipeline can be tested and timed without a
+ * microphone.
+ *
+ * @author David Keen
+ */
+public class SyntheticSource implements AudioSource {
+    // Relative amplitudes of the fundamental and its harmonics.
+    private static final double[] HARMONICS = {1.0, 0.5, 0.33, 0.25};
+    private static final double AMPLITUDE = 8000.0;
+
+    private double frequency;
+    private int rate;
+    private boolean realTime;
+    private long samplesLeft;   // Samples left to generate, or -1 for ever.
+    private double noise;       // Noise level relative to the fundamental.
+
+    private Random random;
+    private long position;      // Samples generated so far.
+    private OutputStream sink;
+    private byte[] chunk;       // Reused between deliveries.
+
+    /**
+     * Creates a new instance of SyntheticSource that never runs out.
+     *
+     * @param frequency the frequency of the tone in Hz.
+     * @param rate the sample rate in Hz.
+     * @param realTime true to deliver the samples no faster than they
+     * would be recorded.
+     */
+    public SyntheticSource(double frequency, int rate, boolean realTime) {
+        this(frequency, rate, realTime, -1);
+    }
+
+    /**
+     * Creates a new instance of SyntheticSource
+     *
+     * @param frequency the frequency of the tone in Hz.
+     * @param rate the sample rate in Hz.
+     * @param realTime true to deliver the samples no faster than they
+     * would be recorded.
+     * @param samples the number of samples to generate, or -1 for ever.
+     */
+    public SyntheticSource(double frequency, int rate, boolean realTime, long samples) {
+        this.frequency = frequency;
+        this.rate = rate;
+        this.realTime = realTime;
+        this.samplesLeft = samples;
+        random = new Random(42);
+    }
+
+    /**
+     * Sets how much random noise is added to the tone.
+     *
+     * @param noise the noise level relative to the fundamental.
+     */
+    public void setNoise(double noise) {
+        this.noise = noise;
+    }
+
+    /**
+     * Changes the frequency of the tone.
+     *
+     * @param frequency the new frequency in Hz.
+     */
+    public void setFrequency(double frequency) {
+        this.frequency = frequency;
+    }
+
+    public void open(OutputStream sink) throws IOException {
+        this.sink = sink;
+    }
+
+    public boolean deliver(int length) throws IOException, InterruptedException {
+        if (samplesLeft == 0) {
+            return false;
+        }
+
+        // Two bytes per sample.
+        int samples = length / 2;
+        if (samplesLeft > 0 && samples > samplesLeft) {
+            samples = (int)samplesLeft;
+        }
+        if (chunk == null || chunk.length < 2 * samples) {
+            chunk = new byte[2 * samples];
+        }
+
+        for (int i = 0; i < samples; i++, position++) {
+            double t = 2.0 * Math.PI * frequency * position / rate;
+            double value = 0.0;
+            for (int h = 0; h < HARMONICS.length; h++) {
+                value += HARMONICS[h] * Math.sin((h + 1) * t);
+            }
+            value += noise * (2.0 * random.nextDouble() - 1.0);
+
+            // 16 bit little-endian.
+            int sample = (int)(AMPLITUDE * value);
+            chunk[2 * i] = (byte)sample;
+            chunk[2 * i + 1] = (byte)(sample >> 8);
+        }
+        sink.write(chunk, 0, 2 * samples);
+
+        if (samplesLeft > 0) {
+            samplesLeft -= samples;
+        }
+        if (realTime) {
+            Thread.sleep(1000L * samples / rate);
+        }
+        return true;
+    }
+
+    public boolean isRealTime() {
+        return realTime;
+    }
+
+    public void close() {
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Timeline.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * The pitch found in each frame of a recording.
+ *
+ * @author David Keen
+ */
+public class Timeline {
+    private String name;
+    private double frameTime;   // The length of a frame in seconds.
+    private double[] frequencies;
+    private int frames;
+
+    /**
+     * Creates a new instance of Timeline
+     *
+     * @param name the name of the recording.
+     * @param frameTime the length of a frame in seconds.
+     */
+    public Timeline(String name, double frameTime) {
+        this.name = name;
+        this.frameTime = frameTime;
+        frequencies = new double[64];
+    }
+
+    /**
+     * Adds the pitch of the next frame.
+     *
+     * @param frequency the frequency in Hz.
+     */
+    public void add(double frequency) {
+        if (frames == frequencies.length) {
+            double[] d = new double[2 * frames];
+            System.arraycopy(frequencies, 0, d, 0, frames);
+            frequencies = d;
+        }
+        frequencies[frames++] = frequency;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the pitch of a frame.
+     *
+     * @param frame the index of the frame.
+     * @return the frequency in Hz.
+     */
+    public double getFrequency(int frame) {
+        return frequencies[frame];
+    }
+
+    /**
+     * Returns when a frame starts.
+     *
+     * @param frame the index of the frame.
+     * @return the time in seconds from the start of the recording.
+     */
+    public double getTime(int frame) {
+        return frame * frameTime;
+    }
+
+    /**
+     * Lists the time, frequency and note of each frame, one per line.
+     *
+     * @return the timeline as text.
+     */
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        sb.append(name).append('\n');
+        for (int i = 0; i < frames; i++) {
+            sb.append(getTime(i)).append('\t')
+                    .append(frequencies[i]).append('\t')
+                    .append(Note.findNote(frequencies[i])).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -14,12 +14,11 @@ import javax.microedition.lcdui.*;
  */
 public class TunerCanvas extends Canvas {
 
-    private double[] spectrum;             // Array of frequencies.
+    private DisplaySpectrum display;       // The spectrum, ready to draw.
 
-    private String noteName;
+    private TunerState state;   // The latest result, set by the analysis.
+    private TunerState shown;   // The result being painted.
     private Font bigFont;
-    private double frequency;
-    private int accuracy;
 
     private final int CANVAS_WIDTH = getWidth();
     private final int CANVAS_HEIGHT = getHeight();
@@ -29,13 +28,15 @@ public class TunerCanvas extends Canvas {
     /** Creates a new instance of TunerCanvas */
     public TunerCanvas() {
         bigFont = Font.getFont(Font.FACE_SYSTEM, Font.STYLE_BOLD, Font.SIZE_LARGE);
-        noteName = "-";
-        frequency = 0.0;
-        accuracy = 0;
-        spectrum = new double[4096];  // Default spectrum length.
+        state = new TunerState();
+        shown = new TunerState();
+        display = new DisplaySpectrum(CANVAS_WIDTH - 2, SPECT_HEIGHT);
     }
 
     protected void paint(Graphics g) {
+        long start = System.currentTimeMillis();
+        state.copyTo(shown);
+
         // Paint the background white.
         g.setColor(0xffffff);
         g.fillRect(0, 0, CANVAS_WIDTH, CANVAS_HEIGHT);
@@ -43,13 +44,13 @@ public class TunerCanvas extends Canvas {
         // Draw the note name.
         g.setColor(0x000000);
         g.setFont(bigFont);
-        g.drawString(noteName, 0, 0, Graphics.TOP | Graphics.LEFT);
+        g.drawString(shown.getNoteName(), 0, 0, Graphics.TOP | Graphics.LEFT);
 
         // Draw the tuning direction.
         String s;
-        if (accuracy < 0) {
+        if (shown.getAccuracy() < 0) {
             s = "Flat";
-        } else if (accuracy > 0) {
+        } else if (shown.getAccuracy() > 0) {
             s = "Sharp";
         } else {
             s = "In tune";
@@ -57,22 +58,47 @@ public class TunerCanvas extends Canvas {
         g.drawString(s, CANVAS_WIDTH / 2, CANVAS_HEIGHT / 2, Graphics.BASELINE | Graphics.HCENTER);
 
         // Draw the frequency detected.
-        g.drawString(frequency + "", CANVAS_WIDTH, 0, Graphics.TOP | Graphics.RIGHT);
+        g.drawString(shown.getFrequency(), CANVAS_WIDTH, 0, Graphics.TOP | Graphics.RIGHT);
 
         // Draw the spectrogram.
         drawSpectrum(g);
+
+        Metrics.time(Metrics.PAINT, start);
+
+        // Only count the latency the first time a result is painted.
+        if (shown.getCaptured() != 0) {
+            Metrics.time(Metrics.LATENCY, shown.getCaptured());
+        }
     }
 
-    public void setNoteName(String noteName) {
-        this.noteName = noteName;
+    /**
+     * Returns the state to set each result in, all at once.  Call
+     * repaint to show it.
+     *
+     * @return the state.
+     */
+    public TunerState getState() {
+        return state;
     }
 
-    public void setSpectrum(double[] spectrum) {
-        this.spectrum = spectrum;
+    public boolean setSpectrum(double[] spectrum) {
+        return setSpectrum(spectrum, false);
     }
 
-    public void setFrequency(double frequency) {
-        this.frequency = frequency;
+    /**
+     * Sets the spectrum to draw.  A spectrum in pitch, from a constant Q
+     * transform, is spread across the whole width so each note gets the
+     * same room.  The spectrum is reduced to a line for each column here,
+     * on the calling thread, so call it from the analysis thread rather
+     * than leave the work to paint.  The array isn't kept.
+     *
+     * @param spectrum the magnitude spectrum.
+     * @param logarithmic true if the bins are spaced evenly in pitch
+     * rather than frequency.
+     * @return true if the spectrum drawn would be different.
+     */
+    public boolean setSpectrum(double[] spectrum, boolean logarithmic) {
+        return display.reduce(spectrum, logarithmic);
     }
 
     /**
@@ -86,50 +112,19 @@ public class TunerCanvas extends Canvas {
         g.setColor(0x000000);
         g.fillRect(1, CANVAS_HEIGHT - SPECT_HEIGHT, CANVAS_WIDTH - 2, SPECT_HEIGHT);
 
-        // We need to scale the spectrum to the displayable screen width but
-        // we only need to graph from min - max frequencies.
-        // Get the xFactor for averaging the values to scale the spectrogram.
-        int xFactor = (int)(Processor.MAX_HZ - Processor.MIN_HZ) / (CANVAS_WIDTH - 2);
-
-        // For each value of the spectrum draw a vertical line.
+        // For each column draw a vertical line.
         // Make the colour red.
-        g.setColor(255, 0, 0);
-        for (int i = 1, j = (int)Processor.MIN_HZ; i < (CANVAS_WIDTH - 1); i++, j += xFactor) {
-
-            // We scale the magnitude of the spectrum array by 40 to give
-            // lines a decent height.
-            int lineLength = CANVAS_HEIGHT - ((int)(average(spectrum, j, xFactor) * 40));
-
-            // If the magnitude is off the scale, make it the max height.
-            if (lineLength < CANVAS_HEIGHT - SPECT_HEIGHT) {
-                lineLength = CANVAS_HEIGHT - SPECT_HEIGHT;
+        int[] columns = display.acquire();
+        try {
+            if (columns == null) {
+                return;
             }
-            g.drawLine(i, CANVAS_HEIGHT, i, lineLength);
-        }
-    }
-
-    /**
-     * Returns the average of a number of consecutive array indices.
-     *
-     * @param array the array to use.
-     * @param startIndex the array index to start averaging from.
-     * @param factor the number of consectutive indices to average.
-     * @return the average.
-     */
-    private double average(double[] array, int startIndex, int factor) {
-        // Prevent divide by zero.
-        if (factor <= 0) {
-            throw new IllegalArgumentException("Factor must be > 0");
-        }
-
-        double d = 0.0;
-        for (int i = 0; i < factor; i++) {
-            d += array[i + startIndex];
+            g.setColor(255, 0, 0);
+            for (int i = 0; i < columns.length; i++) {
+                g.drawLine(i + 1, CANVAS_HEIGHT, i + 1, CANVAS_HEIGHT - columns[i]);
+            }
+        } finally {
+            display.release();
         }
-        return d / factor;
-    }
-
-    public void setAccuracy(int accuracy) {
-        this.accuracy = accuracy;
     }
 }
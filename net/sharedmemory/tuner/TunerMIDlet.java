@@ -22,9 +22,38 @@ public class TunerMIDlet extends MIDlet implements CommandListener {
     // The length of the FFT is 2 raised to this power.
     private int power = 12;
 
+    // Whether to choose between the low and high resolution frame sizes
+    // as the note and the load change, starting from power.
+    private boolean adaptive = false;
+
+    // Which pitch detector to use, one of the PitchDetector constants.
+    private int detector = PitchDetector.HPS;
+
+    // The analysis window moves on by the FFT length divided by this,
+    // so 1 analyses back-to-back frames and 4 overlaps them by 75%.
+    private int overlap = 1;
+
+    // Whether to do the FFT in integer arithmetic.
+    private boolean fixedPoint = false;
+
+    // Whether to record continuously rather than a frame at a time.
+    private boolean streaming = false;
+
+    // What to do when the analysis falls behind, one of the Buffer
+    // policies.  Except when blocking, frames older than MAX_AGE ms are
+    // thrown away too.
+    private int policy = Buffer.BLOCK;
+    private static final long MAX_AGE = 500;
+
+    // The most times a second the screen is repainted, or 0 for every
+    // result that changes it.
+    private int maxFps = 25;
+
     // Threads
     private Thread recorder;
     private Thread processor;
+    private Thread renderer;
+    private RenderScheduler renderScheduler;
     private Buffer buffer;
     boolean okToRun;  // Flag to control threads.
 
@@ -34,6 +63,8 @@ public class TunerMIDlet extends MIDlet implements CommandListener {
     private PreferencesForm preferencesForm;
     private Command exitCommand;
     private Command preferencesCommand;
+    private Command statsCommand;
+    private Command backCommand;
 
     public TunerMIDlet() {
         power = 12;
@@ -44,20 +75,27 @@ public class TunerMIDlet extends MIDlet implements CommandListener {
         tunerCanvas.addCommand(exitCommand);
         preferencesCommand = new Command("Preferences", Command.SCREEN, 1);
         tunerCanvas.addCommand(preferencesCommand);
+        statsCommand = new Command("Stats", Command.SCREEN, 2);
+        tunerCanvas.addCommand(statsCommand);
+        backCommand = new Command("Back", Command.BACK, 0);
         tunerCanvas.setCommandListener(this);
     }
 
     public void startApp() {
         // Allocate all the memory we will need for objects at the start.
-        buffer = new Buffer(getSampleLength());
+        buffer = new Buffer(getHopLength());
+        buffer.setPolicy(policy, (policy == Buffer.BLOCK) ? 0 : MAX_AGE);
         recorder = new Thread(new Recorder(buffer, this));
-        processor = new Thread(new Processor(buffer, this, tunerCanvas));
+        renderScheduler = new RenderScheduler(tunerCanvas, maxFps);
+        renderer = new Thread(renderScheduler);
+        processor = new Thread(new Processor(buffer, this, renderScheduler));
 
         display.setCurrent(tunerCanvas);
 
         okToRun = true;
         recorder.start();
         processor.start();
+        renderer.start();
     }
 
     public void pauseApp() {
@@ -80,6 +118,9 @@ public class TunerMIDlet extends MIDlet implements CommandListener {
                 ((PreferencesForm)displayable).savePreferences();
                 startApp();
             }
+        } else if (commandType == Command.BACK) {
+            // Leaving the stats; the threads kept running.
+            display.setCurrent(tunerCanvas);
         } else if (commandType == Command.EXIT) {
             destroyApp(true);
             notifyDestroyed();
@@ -87,6 +128,12 @@ public class TunerMIDlet extends MIDlet implements CommandListener {
             if (command == preferencesCommand) {
                 pauseApp();
                 display.setCurrent(preferencesForm);
+            } else if (command == statsCommand) {
+                Form stats = new Form("Stats");
+                stats.append(Metrics.getReport());
+                stats.addCommand(backCommand);
+                stats.setCommandListener(this);
+                display.setCurrent(stats);
             }
         }
     }
@@ -101,6 +148,7 @@ public class TunerMIDlet extends MIDlet implements CommandListener {
         // Wake up any sleeping threads so they can stop.
         recorder.interrupt();
         processor.interrupt();
+        renderScheduler.stop();
     }
 
     /**
@@ -111,6 +159,8 @@ public class TunerMIDlet extends MIDlet implements CommandListener {
         buffer = null;
         recorder = null;
         processor = null;
+        renderer = null;
+        renderScheduler = null;
     }
 
     public int getPower() {
@@ -125,6 +175,71 @@ public class TunerMIDlet extends MIDlet implements CommandListener {
         return 1 << power;
     }
 
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public int getDetector() {
+        return detector;
+    }
+
+    public void setDetector(int detector) {
+        this.detector = detector;
+    }
+
+    public int getOverlap() {
+        return overlap;
+    }
+
+    public void setOverlap(int overlap) {
+        this.overlap = overlap;
+    }
+
+    public boolean isFixedPoint() {
+        return fixedPoint;
+    }
+
+    public void setFixedPoint(boolean fixedPoint) {
+        this.fixedPoint = fixedPoint;
+    }
+
+    public int getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(int policy) {
+        this.policy = policy;
+    }
+
+    public int getMaxFps() {
+        return maxFps;
+    }
+
+    public void setMaxFps(int maxFps) {
+        this.maxFps = maxFps;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Returns the number of new samples needed for each analysis.
+     *
+     * @return the sample length divided by the overlap.
+     */
+    public int getHopLength() {
+        return getSampleLength() / overlap;
+    }
+
     /**
      * Shows any error alerts.
      *
@@ -137,5 +252,15 @@ public class TunerMIDlet extends MIDlet implements CommandListener {
         display.setCurrent(alert, next);
     }
 
+    /**
+     * Shows an error the application can't recover from, then the
+     * FatalForm.
+     *
+     * @param message the String to display.
+     */
+    public void showFatalError(String message) {
+        showError(message, new FatalForm(this));
+    }
+
 
 }
@@ -0,0 +1,82 @@
+/*
+ * TunerState.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * The note, frequency and tuning direction on the screen, set together
+ * so paint never shows the note of one result with the frequency of
+ * another.  The analysis thread sets a pending state and paint copies it
+ * to the state it draws.
+ *
+ * @author David Keen
+ */
+public class TunerState {
+    private int note = -1;      // The MIDI note, or -1 for none yet.
+    private int tenths;         // The frequency in tenths of a Hz.
+    private int accuracy;       // Flat < 0, in tune 0, sharp > 0.
+    private long captured;      // When (ms) the frame was recorded, or 0.
+
+    /**
+     * Sets everything at once.
+     *
+     * @param note the MIDI note.
+     * @param frequency the frequency in Hz.
+     * @param accuracy less than 0 for flat, 0 for in tune, more than 0 for
+     * sharp.
+     * @param captured when the frame behind the result was recorded, from
+     * System.currentTimeMillis.
+     * @return true if the screen would show something different.
+     */
+    public synchronized boolean set(int note, double frequency, int accuracy, long captured) {
+        int tenths = (int)(frequency * 10.0 + 0.5);
+        boolean changed = note != this.note || tenths != this.tenths || accuracy != this.accuracy;
+        this.note = note;
+        this.tenths = tenths;
+        this.accuracy = accuracy;
+        this.captured = captured;
+        return changed;
+    }
+
+    /**
+     * Copies this state to another and marks it as shown, so the time
+     * it was captured is only handed over once.
+     *
+     * @param state the state to copy to.
+     */
+    public synchronized void copyTo(TunerState state) {
+        state.note = note;
+        state.tenths = tenths;
+        state.accuracy = accuracy;
+        state.captured = captured;
+        captured = 0;
+    }
+
+    /**
+     * Returns the name of the note.
+     *
+     * @return the name, or "-" if there is no note yet.
+     */
+    public String getNoteName() {
+        return (note < 0) ? "-" : Note.name(note);
+    }
+
+    /**
+     * Returns the frequency as shown, to a tenth of a Hz.
+     *
+     * @return the frequency.
+     */
+    public String getFrequency() {
+        return (tenths / 10) + "." + (tenths % 10);
+    }
+
+    public int getAccuracy() {
+        return accuracy;
+    }
+
+    public long getCaptured() {
+        return captured;
+    }
+}
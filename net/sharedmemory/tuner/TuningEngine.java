@@ -0,0 +1,254 @@
+/*
+ * TuningEngine.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+import java.util.Vector;
+
+/**
+ * Tunes many audio streams at once on a fixed number of worker threads,
+ * rather than a Processor thread for each stream.  A channel is queued
+ * when a frame is committed to it, and a free worker analyses all its
+ * waiting frames and takes the next channel in the queue.  Recording
+ * still needs a thread per source as a capture blocks, but those threads
+ * spend their time waiting, not analysing.
+ *
+ * Make as many workers as there are cores; more only add switching.
+ *
+ * @author David Keen
+ */
+public class TuningEngine {
+    private int threads;
+    private Thread[] workers;
+    private Vector channels;
+    private Vector recorders;   // Recorder and its Thread, in pairs.
+
+    // The channels with frames waiting, in a ring big enough for all of
+    // them as a channel is never queued twice.
+    private Channel[] queue;
+    private int first;          // Index of the next channel to analyse.
+    private int count;          // Channels in the queue.
+    private int active;         // Channels queued or being analysed.
+
+    private boolean running;
+    private long started;       // When (ms) the workers started.
+    private long stopped;       // When (ms) they stopped, or 0.
+
+    /**
+     * Creates a new instance of TuningEngine
+     *
+     * @param threads the number of worker threads.
+     */
+    public TuningEngine(int threads) {
+        this.threads = threads;
+        channels = new Vector();
+        recorders = new Vector();
+        queue = new Channel[4];
+    }
+
+    /**
+     * Adds a channel that something else writes samples to, through its
+     * sink.
+     *
+     * @param detector the detector for this channel alone.
+     * @param frameLength the number of bytes in each frame.
+     * @param rate the sample rate in Hz.
+     * @param block true to make the writer wait when the analysis falls
+     * behind, false to drop frames.
+     * @return the new Channel.
+     */
+    public synchronized Channel addChannel(PitchDetector detector, int frameLength, int rate, boolean block) {
+        Channel channel = new Channel(this, detector, frameLength, rate, block);
+        channels.addElement(channel);
+
+        if (queue.length < channels.size()) {
+            Channel[] q = new Channel[2 * queue.length];
+            for (int i = 0; i < count; i++) {
+                q[i] = queue[(first + i) % queue.length];
+            }
+            queue = q;
+            first = 0;
+        }
+        return channel;
+    }
+
+    /**
+     * Adds a channel that records from an AudioSource on its own thread.
+     * A real time source drops frames if the workers fall behind.
+     *
+     * @param source where to get the samples from.
+     * @param detector the detector for this channel alone.
+     * @param frameLength the number of bytes in each frame.
+     * @param rate the sample rate in Hz.
+     * @return the new Channel.
+     */
+    public synchronized Channel addSource(AudioSource source, PitchDetector detector, int frameLength, int rate) {
+        Channel channel = addChannel(detector, frameLength, rate, !source.isRealTime());
+        Recorder recorder = new Recorder(channel.getSink(), source, frameLength);
+        Thread thread = new Thread(recorder);
+        recorders.addElement(recorder);
+        recorders.addElement(thread);
+        if (running) {
+            thread.start();
+        }
+        return channel;
+    }
+
+    /**
+     * Starts the workers and the recorders.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        started = System.currentTimeMillis();
+        stopped = 0;
+
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Worker());
+            workers[i].start();
+        }
+        for (int i = 1; i < recorders.size(); i += 2) {
+            ((Thread)recorders.elementAt(i)).start();
+        }
+    }
+
+    /**
+     * Waits for every source to run out and every frame to be analysed.
+     * Only use this when all the sources end.
+     *
+     * @throws InterruptedException if the thread was interrupted.
+     */
+    public void join() throws InterruptedException {
+        for (int i = 1; i < recorders.size(); i += 2) {
+            ((Thread)recorders.elementAt(i)).join();
+        }
+        synchronized (this) {
+            while (active > 0) {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * Stops the recorders and the workers, leaving any frames waiting.
+     *
+     * @throws InterruptedException if the thread was interrupted.
+     */
+    public void stop() throws InterruptedException {
+        // A recorder may be waiting for room in its buffer.
+        for (int i = 0; i < recorders.size(); i += 2) {
+            ((Recorder)recorders.elementAt(i)).stop();
+            ((Thread)recorders.elementAt(i + 1)).interrupt();
+        }
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            stopped = System.currentTimeMillis();
+            notifyAll();
+        }
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].join();
+        }
+    }
+
+    /**
+     * Reports how much the workers have got through, as the number of
+     * real time streams each thread could keep up with.
+     *
+     * @return the channels, frames, frames/s and streams per thread.
+     */
+    public String getReport() {
+        long frames = 0;
+        double audio = 0.0;
+        for (int i = 0; i < channels.size(); i++) {
+            Channel channel = (Channel)channels.elementAt(i);
+            frames += channel.getFrames();
+            audio += channel.getSeconds();
+        }
+        long end = (stopped == 0) ? System.currentTimeMillis() : stopped;
+        double seconds = Math.max(end - started, 1) / 1000.0;
+        return channels.size() + " channels, " + frames + " frames in " + seconds + " s with "
+                + threads + " threads: " + (frames / seconds) + " frames/s, "
+                + (audio / seconds / threads) + " real time streams per thread";
+    }
+
+    /**
+     * Queues a channel that has a new frame, unless it is already queued
+     * or being analysed.
+     *
+     * @param channel the channel with a new frame.
+     */
+    synchronized void schedule(Channel channel) {
+        if (!channel.scheduled) {
+            channel.scheduled = true;
+            active++;
+            enqueue(channel);
+        }
+    }
+
+    /**
+     * Takes the next channel from the queue, waiting if there are none.
+     *
+     * @return the channel, or null if the engine has stopped.
+     */
+    private synchronized Channel take() {
+        while (running && count == 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+        if (!running) {
+            return null;
+        }
+        Channel channel = queue[first];
+        queue[first] = null;
+        first = (first + 1) % queue.length;
+        count--;
+        return channel;
+    }
+
+    /**
+     * Puts a channel back at the end of the queue if more frames came in
+     * while it was being analysed.  The frames are committed before the
+     * channel is scheduled, so checking here under the lock can't miss one.
+     *
+     * @param channel the channel the worker has finished with.
+     */
+    private synchronized void finished(Channel channel) {
+        if (channel.available() > 0) {
+            enqueue(channel);
+        } else {
+            channel.scheduled = false;
+            active--;
+            notifyAll();
+        }
+    }
+
+    private void enqueue(Channel channel) {
+        queue[(first + count) % queue.length] = channel;
+        count++;
+        notifyAll();
+    }
+
+    /**
+     * Analyses channels until the engine is stopped.
+     */
+    private class Worker implements Runnable {
+        public void run() {
+            for (Channel channel; (channel = take()) != null;) {
+                // Only the frames waiting now, so the others get a turn.
+                channel.process(channel.available());
+                finished(channel);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+
+public class TuningEngineTest extends TestCase {
+
+    private static final int POWER = 11;
+    private static final int FRAMES = 20;
+
+    public TuningEngineTest() {
+    }
+
+    public TuningEngineTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * More channels than workers must each get every frame analysed with
+     * their own detector, and find their own note.
+     */
+    public void testChannels() throws InterruptedException {
+        System.out.println("channels");
+        int frameLength = 1 << POWER;
+        double[] frequencies = {110.0, 196.0, 261.63, 329.63, 440.0, 659.26};
+
+        TuningEngine instance = new TuningEngine(2);
+        Channel[] channels = new Channel[frequencies.length];
+        for (int i = 0; i < channels.length; i++) {
+            SyntheticSource source = new SyntheticSource(frequencies[i], TunerMIDlet.RATE, false, (long)FRAMES * frameLength / 2);
+            channels[i] = instance.addSource(source, new YinDetector(POWER, TunerMIDlet.RATE), frameLength, TunerMIDlet.RATE);
+        }
+        instance.start();
+        instance.join();
+        instance.stop();
+
+        for (int i = 0; i < channels.length; i++) {
+            assertEquals(FRAMES, channels[i].getFrames());
+            double error = Math.abs(channels[i].getFrequency() - frequencies[i]);
+            assertTrue("channel " + i + " was " + channels[i].getFrequency(), error < 0.003 * frequencies[i]);
+        }
+    }
+
+    /**
+     * A channel can be fed through its sink by any one thread.
+     */
+    public void testSink() throws Exception {
+        System.out.println("sink");
+        int frameLength = 1 << POWER;
+        TuningEngine instance = new TuningEngine(1);
+        Channel channel = instance.addChannel(new McLeodDetector(POWER, TunerMIDlet.RATE), frameLength, TunerMIDlet.RATE, true);
+        instance.start();
+
+        SyntheticSource source = new SyntheticSource(220.0, TunerMIDlet.RATE, false);
+        source.open(channel.getSink());
+        for (int i = 0; i < FRAMES; i++) {
+            source.deliver(frameLength);
+        }
+        instance.join();
+        instance.stop();
+
+        assertEquals(FRAMES, channel.getFrames());
+        assertTrue("was " + channel.getFrequency(), Math.abs(channel.getFrequency() - 220.0) < 0.66);
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new TuningEngineTest("testChannels", new TestMethod(){ public void run(TestCase tc) throws Throwable {((TuningEngineTest) tc).testChannels();}}));
+        suite.addTest(new TuningEngineTest("testSink", new TestMethod(){ public void run(TestCase tc) throws Throwable {((TuningEngineTest) tc).testSink();}}));
+        return suite;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * WavSource.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+import java.io.*;
+
+/**
+ * Reads samples from a WAV file.  Only 16 bit mono PCM is supported,
+ * which is what the capture records.
+ *
+ * @author David Keen
+ */
+public class WavSource extends PcmSource {
+    private long remaining;     // Bytes left in the data chunk.
+
+    /**
+     * Creates a new instance of WavSource and reads the WAV header.
+     *
+     * @param in the stream of the WAV file.
+     * @param realTime true to deliver the samples no faster than they
+     * would be recorded.
+     * @throws IOException if the file can't be read or isn't supported.
+     */
+    public WavSource(InputStream in, boolean realTime) throws IOException {
+        super(in, 0, realTime);
+
+        if (readTag(in) != tag("RIFF")) {
+            throw new IOException("Not a WAV file");
+        }
+        readInt(in);
+        if (readTag(in) != tag("WAVE")) {
+            throw new IOException("Not a WAV file");
+        }
+
+        // Read the chunks up to the start of the samples.
+        boolean format = false;
+        while (true) {
+            int id = readTag(in);
+            long size = readInt(in) & 0xffffffffL;
+            if (id == tag("fmt ")) {
+                int encoding = readShort(in);
+                int channels = readShort(in);
+                setRate(readInt(in));
+                readInt(in);        // Bytes per second.
+                readShort(in);      // Block alignment.
+                int bits = readShort(in);
+                if (encoding != 1 || channels != 1 || bits != 16) {
+                    throw new IOException("Only 16 bit mono PCM is supported");
+                }
+                skip(in, size - 16);
+                format = true;
+            } else if (id == tag("data")) {
+                if (!format) {
+                    throw new IOException("No WAV format chunk");
+                }
+                remaining = size;
+                return;
+            } else {
+                skip(in, size);
+            }
+            // Chunks are word aligned.
+            skip(in, size & 1);
+        }
+    }
+
+    protected int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int n = super.read(b, off, (int)Math.min(len, remaining));
+        if (n > 0) {
+            remaining -= n;
+        }
+        return n;
+    }
+
+    private static int tag(String s) {
+        return (s.charAt(0) << 24) | (s.charAt(1) << 16) | (s.charAt(2) << 8) | s.charAt(3);
+    }
+
+    private static int readTag(InputStream in) throws IOException {
+        return (readByte(in) << 24) | (readByte(in) << 16) | (readByte(in) << 8) | readByte(in);
+    }
+
+    // WAV numbers are little-endian.
+    private static int readInt(InputStream in) throws IOException {
+        return readByte(in) | (readByte(in) << 8) | (readByte(in) << 16) | (readByte(in) << 24);
+    }
+
+    private static int readShort(InputStream in) throws IOException {
+        return readByte(in) | (readByte(in) << 8);
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private static void skip(InputStream in, long n) throws IOException {
+        for (; n > 0; n--) {
+            readByte(in);
+        }
+    }
+}
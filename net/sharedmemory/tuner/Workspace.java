@@ -0,0 +1,274 @@
+/*
+ * Workspace.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * The FFT and all the intermediate arrays needed to find the pitch of
+ * a frame of 16 bit samples with the Harmonic Product Spectrum.
+ * Everything is allocated once for a given FFT size so analysing a
+ * frame allocates nothing.  A Workspace is not thread-safe; each
+ * analysis pipeline needs its own.
+ *
+ * @author David Keen
+ */
+public class Workspace implements PitchDetector {
+
+    // The length of the decimation filter.
+    private static final int FILTER_TAPS = 31;
+
+    private int rate;           // The sample rate in Hz, after decimation.
+    private double resolution;  // The resolution of the FFT "bins".
+    private int minIdx;
+    private int maxIdx;
+    private int scanIdx;        // maxIdx before the harmonics limit it.
+
+    private Decimator decimator;  // Band limits the samples, or null.
+    private double[] decoded;   // The samples, decimated if need be.
+
+    private FFT fft;            // The double FFT, or null for FixedFFT.
+    private double[] xr;        // Array of real parts (even samples in).
+    private double[] xi;        // Array of complex parts (odd samples in).
+    private double[] power;     // The power spectrum.
+    private double[] spectrum;  // The magnitude spectrum, for display.
+    private boolean magnitudes; // Whether spectrum is up to date.
+    private HarmonicProductSpectrum hps;
+    private boolean interpolate = true;
+
+    private FixedFFT fixedFft;  // The integer FFT, or null to use doubles.
+    private int[] ixr;          // Integer real parts.
+    private int[] ixi;          // Integer complex parts.
+
+    /**
+     * Creates a new instance of Workspace.
+     *
+     * @param power there are 2 raised to this power bytes, so half as many
+     * 16 bit samples, in each frame.
+     */
+    public Workspace(int power) {
+        this(power, TunerMIDlet.RATE);
+    }
+
+    /**
+     * Creates a new instance of Workspace for samples recorded at any rate.
+     *
+     * @param power there are 2 raised to this power bytes, so half as many
+     * 16 bit samples, in each frame.
+     * @param rate the sample rate in Hz.
+     */
+    public Workspace(int power, int rate) {
+        this(power, rate, 1);
+    }
+
+    /**
+     * Creates a new instance of Workspace that decimates the samples
+     * before the FFT.  The harmonics we look at are well below the
+     * Nyquist frequency, so the rate can be halved and a half length FFT
+     * gives the same resolution.
+     *
+     * @param power there are 2 raised to this power bytes, so half as many
+     * 16 bit samples, in each frame.
+     * @param rate the sample rate in Hz.
+     * @param decimation the sample rate is divided by this, a power of 2,
+     * or 1 to transform the frame as it is.
+     */
+    public Workspace(int power, int rate, int decimation) {
+        this(power, rate, decimation, false);
+    }
+
+    /**
+     * Creates a new instance of Workspace that can do the FFT in integer
+     * arithmetic, which is faster on phones without a floating point unit.
+     *
+     * @param power there are 2 raised to this power bytes, so half as many
+     * 16 bit samples, in each frame.
+     * @param rate the sample rate in Hz.
+     * @param decimation the sample rate is divided by this, a power of 2,
+     * or 1 to transform the frame as it is.
+     * @param fixedPoint true to use FixedFFT.
+     */
+    public Workspace(int power, int rate, int decimation, boolean fixedPoint) {
+        // Two bytes per sample.
+        int sampleLength = (1 << power) / 2;
+        int fftLength = sampleLength / decimation;
+        int bits = power - 1 - log2(decimation);
+        this.rate = rate / decimation;
+
+        // Convert the frequency range into FFT array indices to scan.
+        // The resolution doesn't change with decimation.
+        resolution = (double)rate / (double)sampleLength;
+        minIdx = (int)(Processor.MIN_HZ / resolution);
+        scanIdx = (int)(Processor.MAX_HZ / resolution);
+
+        if (decimation > 1) {
+            decimator = new Decimator(decimation, FILTER_TAPS);
+        }
+
+        // FixedFFT decodes the raw samples itself.
+        if (decimation > 1 || !fixedPoint) {
+            decoded = new double[fftLength];
+        }
+
+        // The samples are real so a half length transform will do.
+        if (fixedPoint) {
+            fixedFft = new FixedFFT(bits);
+            ixr = new int[fftLength / 2];
+            ixi = new int[fftLength / 2];
+        } else {
+            fft = new FFT(bits);
+            xr = new double[fftLength / 2];
+            xi = new double[fftLength / 2];
+        }
+        this.power = new double[fftLength / 2];
+        spectrum = new double[fftLength / 2];
+        setHarmonics(HarmonicProductSpectrum.DEFAULT_HARMONICS);
+    }
+
+    /**
+     * Finds the fundamental frequency of a frame of 16 bit samples using
+     * the Harmonic Product Spectrum.
+     *
+     * @param samples the raw samples, 2^power bytes of them.
+     * @return the frequency in Hz.
+     */
+    public double analyse(byte[] samples) {
+        if (fixedFft != null) {
+            if (decimator == null) {
+                fixedFft.populateRealArrays(ixr, ixi, samples);
+            } else {
+                decimator.decimate(samples, decoded);
+                fixedFft.populateRealArrays(ixr, ixi, decoded);
+            }
+            int exponent = fixedFft.doRealFFT(ixr, ixi);
+            fixedFft.createPowerSpectrum(ixr, ixi, exponent, power);
+        } else {
+            if (decimator == null) {
+                Pcm.decode(samples, decoded);
+            } else {
+                decimator.decimate(samples, decoded);
+            }
+            fft.populateRealArrays(xr, xi, decoded);
+            fft.doRealFFT(xr, xi);
+
+            // Create the original frequency spectrum
+            fft.createPowerSpectrum(xr, xi, power);
+        }
+        magnitudes = false;
+
+        // Calculate the Harmonic Product Spectrum
+        int max = hps.findMax(power, minIdx, maxIdx);
+
+        // Convert the index to frequency.  There is a bin for every other
+        // sample transformed.
+        if (!interpolate) {
+            return FFT.indexToFrequency(rate, 2 * power.length, max);
+        }
+        return FFT.indexToFrequency(rate, 2 * power.length, refine(max));
+    }
+
+    /**
+     * Sets how many harmonics the Harmonic Product Spectrum multiplies.
+     * The highest harmonic of the highest note scanned must still be in
+     * the spectrum, so more harmonics can lower the highest note.
+     *
+     * @param harmonics the number of harmonics, counting the fundamental.
+     */
+    public void setHarmonics(int harmonics) {
+        hps = new HarmonicProductSpectrum(harmonics);
+        maxIdx = Math.min(scanIdx, (power.length - 1) / harmonics);
+    }
+
+    /**
+     * Sets whether the peak is interpolated between bins.  Without it the
+     * frequency is the centre of the winning bin, as it used to be.
+     *
+     * @param interpolate true to interpolate.
+     */
+    public void setInterpolation(boolean interpolate) {
+        this.interpolate = interpolate;
+    }
+
+    /**
+     * Finds the fundamental between the bins from the strongest of its
+     * harmonics, as a bin is a smaller fraction of a higher harmonic.
+     *
+     * @param index the bin of the fundamental.
+     * @return the interpolated index of the fundamental.
+     */
+    private double refine(int index) {
+        int best = index;
+        int harmonic = 1;
+        for (int h = 1; h <= hps.getHarmonics(); h++) {
+            // The harmonic may be up to h/2 bins from h times the bin.
+            int reach = h / 2 + 1;
+            int from = Math.max(h * index - reach, 2);
+            int to = Math.min(h * index + reach, power.length - 3);
+            for (int i = from; i <= to; i++) {
+                if (power[i] > power[best]) {
+                    best = i;
+                    harmonic = h;
+                }
+            }
+        }
+        if (best < 2 || best > power.length - 3) {
+            return index;
+        }
+
+        // Interpolate on the Hann windowed spectrum, whose peaks have the
+        // shape interpolatePeak fits.  Windowing is a convolution with
+        // the bins either side, so only the three bins we need are done
+        // and the Harmonic Product Spectrum is left as it was.
+        double delta = FFT.interpolatePeak(hann(best - 1), hann(best), hann(best + 1));
+        return (best + delta) / harmonic;
+    }
+
+    /**
+     * Returns the magnitude of a bin as if the frame had been Hann
+     * windowed before the FFT.
+     *
+     * @param k the bin, not the first or last.
+     * @return the windowed magnitude.
+     */
+    private double hann(int k) {
+        double re, im;
+        if (fixedFft != null) {
+            // Only the ratios matter so the block exponent can be left out.
+            re = 0.5 * ixr[k] - 0.25 * (ixr[k - 1] + ixr[k + 1]);
+            im = 0.5 * ixi[k] - 0.25 * (ixi[k - 1] + ixi[k + 1]);
+        } else {
+            re = 0.5 * xr[k] - 0.25 * (xr[k - 1] + xr[k + 1]);
+            im = 0.5 * xi[k] - 0.25 * (xi[k - 1] + xi[k + 1]);
+        }
+        return Math.sqrt(re * re + im * im);
+    }
+
+    /**
+     * Returns the spectrum of the last frame analysed.  The array is
+     * reused by the next call to analyse.  The analysis only needs the
+     * power spectrum, so the square roots are left until now.
+     *
+     * @return the magnitude spectrum.
+     */
+    public double[] getSpectrum() {
+        if (!magnitudes) {
+            for (int i = 0; i < power.length; i++) {
+                spectrum[i] = Math.sqrt(power[i]);
+            }
+            magnitudes = true;
+        }
+        return spectrum;
+    }
+
+    /**
+     * Returns the power of 2 a number is, rounded up.
+     */
+    private static int log2(int n) {
+        int bits = 0;
+        while ((1 << bits) < n) {
+            bits++;
+        }
+        return bits;
+    }
+}
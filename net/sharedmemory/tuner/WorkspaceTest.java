@@ -0,0 +1,149 @@
+package net.sharedmemory.tuner;
+import j2meunit.framework.*;
+
+public class WorkspaceTest extends TestCase {
+
+    private static final int POWER = 12;
+    private static final int SAMPLES = (1 << POWER) / 2;
+
+    public WorkspaceTest() {
+    }
+
+    public WorkspaceTest(String testName, TestMethod testMethod) {
+        super(testName, testMethod);
+    }
+
+    public void setUp() {
+    }
+
+    public void tearDown() {
+    }
+
+    /**
+     * Test of analyse method, of class net.sharedmemory.tuner.Workspace.
+     */
+    public void testanalyse() {
+        System.out.println("analyse");
+        Workspace instance = new Workspace(POWER);
+        double resolution = (double)TunerMIDlet.RATE / SAMPLES;
+
+        double frequency = 220.0;
+        double result = instance.analyse(signal(frequency, TunerMIDlet.RATE));
+        assertTrue("expected " + frequency + " got " + result, Math.abs(result - frequency) < 2 * resolution);
+
+        frequency = 659.26;
+        result = instance.analyse(signal(frequency, TunerMIDlet.RATE));
+        assertTrue("expected " + frequency + " got " + result, Math.abs(result - frequency) < 2 * resolution);
+    }
+
+    /**
+     * Interpolating between bins must find tones that fall between them
+     * far closer than the bin width.
+     */
+    public void testInterpolation() {
+        System.out.println("analyse interpolated");
+        Workspace instance = new Workspace(POWER);
+        double resolution = (double)TunerMIDlet.RATE / SAMPLES;
+
+        for (double frequency = 200.0; frequency < 210.0; frequency += 0.7) {
+            double result = instance.analyse(signal(frequency, TunerMIDlet.RATE));
+            assertTrue("expected " + frequency + " got " + result, Math.abs(result - frequency) < 0.1 * resolution);
+        }
+    }
+
+    /**
+     * Decimating before the FFT must give the same result from a half
+     * length transform.  The third harmonic of the top note is only clear
+     * of the Nyquist frequency after halving a rate of twice RATE.
+     */
+    public void testDecimated() {
+        System.out.println("analyse decimated");
+        int rate = 2 * TunerMIDlet.RATE;
+        Workspace instance = new Workspace(POWER, rate, 2);
+        Workspace full = new Workspace(POWER, rate);
+        assertEquals(SAMPLES / 4, instance.getSpectrum().length);
+        assertEquals(1, Processor.decimation(TunerMIDlet.RATE));
+        assertEquals(2, Processor.decimation(rate));
+
+        double[] frequencies = {130.81, 220.0, 440.0, 659.26, 987.77};
+        for (int i = 0; i < frequencies.length; i++) {
+            byte[] samples = signal(frequencies[i], rate);
+            double expected = full.analyse(samples);
+            double result = instance.analyse(samples);
+            assertTrue("expected " + expected + " got " + result, Math.abs(result - expected) < 0.01);
+        }
+    }
+
+    /**
+     * The fixed point FFT must find the same frequencies as the double one.
+     */
+    public void testFixedPoint() {
+        System.out.println("analyse fixed point");
+        for (int decimation = 1; decimation <= 2; decimation *= 2) {
+            int rate = decimation * TunerMIDlet.RATE;
+            Workspace instance = new Workspace(POWER, rate, decimation, true);
+            Workspace expected = new Workspace(POWER, rate, decimation, false);
+            double[] frequencies = {130.81, 220.0, 440.0, 659.26, 987.77};
+            for (int i = 0; i < frequencies.length; i++) {
+                byte[] samples = signal(frequencies[i], rate);
+                double result = instance.analyse(samples);
+                double frequency = expected.analyse(samples);
+                assertTrue("expected " + frequency + " got " + result, Math.abs(result - frequency) < 0.05);
+            }
+        }
+    }
+
+    /**
+     * Analysing a frame must not allocate anything once the Workspace
+     * has been created.
+     */
+    public void testAllocation() {
+        System.out.println("analyse allocation");
+        Workspace instance = new Workspace(POWER);
+        byte[] samples = signal(440.0, TunerMIDlet.RATE);
+
+        // Warm up first, as the VM may allocate while it compiles.
+        int frames = 100;
+        for (int i = 0; i < frames; i++) {
+            instance.analyse(samples);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < frames; i++) {
+            instance.analyse(samples);
+        }
+        long used = runtime.totalMemory() - runtime.freeMemory() - before;
+
+        // Allocating the intermediate arrays would take five half length
+        // double arrays per frame; allow less than one of them in total.
+        long oneArray = 8L * SAMPLES / 2;
+        assertTrue("allocated " + used + " bytes in " + frames + " frames", used < oneArray);
+    }
+
+    /**
+     * Creates a frame with a harmonic rich tone, as 16 bit little-endian
+     * samples.
+     */
+    private byte[] signal(double frequency, int rate) {
+        byte[] samples = new byte[2 * SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            double t = 2.0 * Math.PI * frequency * i / rate;
+            int sample = (int)(5000.0 * Math.sin(t) + 2500.0 * Math.sin(2 * t) + 1500.0 * Math.sin(3 * t));
+            samples[2 * i] = (byte)sample;
+            samples[2 * i + 1] = (byte)(sample >> 8);
+        }
+        return samples;
+    }
+
+    public Test suite() {
+        TestSuite suite = new TestSuite();
+
+        suite.addTest(new WorkspaceTest("testanalyse", new TestMethod(){ public void run(TestCase tc) {((WorkspaceTest) tc).testanalyse();}}));
+        suite.addTest(new WorkspaceTest("testInterpolation", new TestMethod(){ public void run(TestCase tc) {((WorkspaceTest) tc).testInterpolation();}}));
+        suite.addTest(new WorkspaceTest("testDecimated", new TestMethod(){ public void run(TestCase tc) {((WorkspaceTest) tc).testDecimated();}}));
+        suite.addTest(new WorkspaceTest("testFixedPoint", new TestMethod(){ public void run(TestCase tc) {((WorkspaceTest) tc).testFixedPoint();}}));
+        suite.addTest(new WorkspaceTest("testAllocation", new TestMethod(){ public void run(TestCase tc) {((WorkspaceTest) tc).testAllocation();}}));
+        return suite;
+    }
+}
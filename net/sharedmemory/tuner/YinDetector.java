@@ -0,0 +1,125 @@
+/*
+ * YinDetector.java
+ *
+ */
+
+package net.sharedmemory.tuner;
+
+/**
+ * Finds the pitch of a frame with the YIN algorithm (de Cheveigne and
+ * Kawahara, 2002).  The difference function is built from an
+ * autocorrelation done with the FFT, so a frame costs O(n log n) rather
+ * than O(n^2).  YIN works in the time domain so it copes with notes whose
+ * fundamental is weak, and it needs far shorter frames than the Harmonic
+ * Product Spectrum for the same accuracy.
+ *
+ * @author David Keen
+ */
+public class YinDetector implements PitchDetector {
+
+    // The largest normalised difference that still counts as a period.
+    private static final double THRESHOLD = 0.15;
+
+    private int rate;           // The sample rate in Hz.
+    private int length;         // Samples in a frame.
+    private int minTau;         // The shortest period (lag) to look for.
+    private int maxTau;         // The longest period to look for.
+
+    private Autocorrelation autocorrelation;
+    private double[] x;         // The decoded samples.
+    private double[] diff;      // The difference function.
+    private double[] d;         // The normalised difference function.
+
+    /**
+     * Creates a new instance of YinDetector.
+     *
+     * @param power there are 2 raised to this power bytes, so half as many
+     * 16 bit samples, in each frame.
+     * @param rate the sample rate in Hz.
+     */
+    public YinDetector(int power, int rate) {
+        this.rate = rate;
+        length = (1 << power) / 2;
+        minTau = Math.max(2, (int)(rate / Processor.MAX_HZ));
+        maxTau = Math.min(length / 2, (int)(rate / Processor.MIN_HZ) + 2);
+
+        autocorrelation = new Autocorrelation(power);
+        x = new double[length];
+        diff = new double[maxTau + 1];
+        d = new double[maxTau + 1];
+    }
+
+    /**
+     * Finds the fundamental frequency of a frame of 16 bit samples.
+     *
+     * @param samples the raw samples, 2^power bytes of them.
+     * @return the frequency in Hz.
+     */
+    public double analyse(byte[] samples) {
+        Pcm.decode(samples, x);
+
+        // A constant offset has no pitch but differs so little from itself
+        // that rounding makes dips, so it is taken out first.
+        double mean = 0.0;
+        for (int i = 0; i < length; i++) {
+            mean += x[i];
+        }
+        mean /= length;
+        for (int i = 0; i < length; i++) {
+            x[i] -= mean;
+        }
+        double[] r = autocorrelation.compute(x);
+
+        // d(tau) = m(tau) - 2 r(tau), where m(tau) is the energy of the
+        // two overlapping parts, taken off one sample at a time.  It is
+        // normalised by its running mean.
+        double m = 2.0 * r[0];
+        double sum = 0.0;
+        d[0] = 1.0;
+        for (int tau = 1; tau <= maxTau; tau++) {
+            m -= x[tau - 1] * x[tau - 1] + x[length - tau] * x[length - tau];
+            diff[tau] = m - 2.0 * r[tau];
+            sum += diff[tau];
+            d[tau] = (sum > 0.0) ? diff[tau] * tau / sum : 1.0;
+        }
+
+        // Take the first dip below the threshold, or failing that the
+        // deepest one.  A frame with no dip at all, such as silence, DC or
+        // a note below MIN_HZ still falling at maxTau, has no pitch.  The
+        // position is refined on the raw difference function as the
+        // normalisation skews it.
+        int best = -1;
+        for (int tau = minTau; tau < maxTau; tau++) {
+            if (d[tau] < THRESHOLD) {
+                while (tau + 1 < maxTau && d[tau + 1] < d[tau]) {
+                    tau++;
+                }
+                best = tau;
+                break;
+            }
+            if (d[tau] < d[tau - 1] && d[tau] <= d[tau + 1] && (best < 0 || d[tau] < d[best])) {
+                best = tau;
+            }
+        }
+        if (best < 0) {
+            return 0.0;
+        }
+
+        // The raw minimum may be a lag away from the normalised one.
+        if (best < maxTau && diff[best + 1] < diff[best]) {
+            best++;
+        } else if (diff[best - 1] < diff[best]) {
+            best--;
+        }
+        return rate / Autocorrelation.interpolate(diff, best);
+    }
+
+    /**
+     * Returns null as YIN doesn't make a spectrum.
+     *
+     * @return null.
+     */
+    public double[] getSpectrum() {
+        return null;
+    }
+}